@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, accepting the standard JMH command line options. Unless a result
+ * format or file is given on the command line, results are written as JSON to
+ * {@code jmh-result.json} so that runs can be compared.
+ */
+public final class BenchmarkRunner
+{
+   private BenchmarkRunner()
+   {
+   }
+
+   public static void main(String[] args) throws Exception
+   {
+      CommandLineOptions cmdOptions = new CommandLineOptions(args);
+      ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+      if (!cmdOptions.getResultFormat().hasValue())
+         options.resultFormat(ResultFormatType.JSON);
+      if (!cmdOptions.getResult().hasValue())
+         options.result("jmh-result.json");
+
+      if (cmdOptions.shouldHelp())
+      {
+         cmdOptions.showHelp();
+         return;
+      }
+
+      Runner runner = new Runner(options.build());
+      if (cmdOptions.shouldList())
+         runner.list();
+      else
+         runner.run();
+   }
+}
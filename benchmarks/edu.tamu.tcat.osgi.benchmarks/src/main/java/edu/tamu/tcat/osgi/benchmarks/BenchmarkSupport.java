@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import edu.tamu.tcat.osgi.config.file.SimpleFileConfigurationProperties;
+import edu.tamu.tcat.osgi.config.internal.Activator;
+
+/**
+ * Shared setup for the configuration benchmarks.
+ * <p>
+ * {@link SimpleFileConfigurationProperties} locates its properties file through a framework
+ * property read from the configuration bundle's {@link Activator}. Outside of a framework,
+ * the activator is started once with a {@link StubBundleContext} and each benchmark defines
+ * its own framework property naming the file it generated.
+ */
+public final class BenchmarkSupport
+{
+   private static StubBundleContext context;
+
+   private BenchmarkSupport()
+   {
+   }
+
+   /**
+    * @return The context with which the configuration bundle's activator has been started.
+    */
+   public static synchronized StubBundleContext getContext()
+   {
+      if (context == null)
+      {
+         StubBundleContext stub = new StubBundleContext();
+         try
+         {
+            new Activator().start(stub);
+         }
+         catch (Exception e)
+         {
+            throw new IllegalStateException("Failed starting configuration bundle activator", e);
+         }
+         context = stub;
+      }
+
+      return context;
+   }
+
+   /**
+    * @return {@code count} generated property values with keys in a few dozen groups, as are
+    *       typical of application configuration.
+    */
+   public static Map<String, String> generate(int count)
+   {
+      Map<String, String> values = new HashMap<String, String>();
+      for (int i = 0; i < count; i++)
+         values.put("app.group" + (i % 50) + ".key" + i, "value-" + i);
+      return values;
+   }
+
+   /**
+    * Write values to a new temporary properties file.
+    */
+   public static Path writeProperties(Map<String, String> values) throws IOException
+   {
+      Path file = Files.createTempFile("benchmark", ".properties");
+      Properties props = new Properties();
+      props.putAll(values);
+      try (OutputStream out = Files.newOutputStream(file))
+      {
+         props.store(out, null);
+      }
+      return file;
+   }
+
+   /**
+    * Activate a configuration service for the given properties file.
+    *
+    * @param file The properties file to load.
+    * @param params Additional DS properties, may be empty.
+    */
+   public static SimpleFileConfigurationProperties activate(Path file, Map<String, Object> params)
+   {
+      String propName = "benchmark.config.file." + file.getFileName();
+      getContext().setProperty(propName, file.toString());
+
+      Map<String, Object> dsProps = new HashMap<String, Object>(params);
+      dsProps.put(SimpleFileConfigurationProperties.PROP_FILE, propName);
+
+      SimpleFileConfigurationProperties config = new SimpleFileConfigurationProperties();
+      config.activate(dsProps);
+      return config;
+   }
+
+   /**
+    * Wait for the snapshot file of a properties file to be written in the background.
+    */
+   public static void awaitSnapshotFile(Path file) throws InterruptedException
+   {
+      Path snapshotFile = getSnapshotFile(file);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+      while (!Files.exists(snapshotFile))
+      {
+         if (System.nanoTime() > deadline)
+            throw new IllegalStateException("Snapshot file was not written: " + snapshotFile);
+         Thread.sleep(50);
+      }
+   }
+
+   /**
+    * Delete a generated properties file along with any snapshot file kept alongside it.
+    */
+   public static void delete(Path file) throws IOException
+   {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(getSnapshotFile(file));
+   }
+
+   private static Path getSnapshotFile(Path file)
+   {
+      return file.resolveSibling(file.getFileName() + ".snapshot");
+   }
+}
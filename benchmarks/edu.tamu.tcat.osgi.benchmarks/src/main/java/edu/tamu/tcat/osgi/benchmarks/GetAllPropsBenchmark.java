@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.tamu.tcat.osgi.config.file.SimpleFileConfigurationProperties;
+
+/**
+ * Measures {@link SimpleFileConfigurationProperties#getAllProps()} on large configurations,
+ * both to obtain the map and to obtain it and visit every entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetAllPropsBenchmark
+{
+   @Param({"1000", "100000", "1000000"})
+   public int size;
+
+   private Path file;
+   private SimpleFileConfigurationProperties config;
+
+   @Setup(Level.Trial)
+   public void setup() throws IOException
+   {
+      file = BenchmarkSupport.writeProperties(BenchmarkSupport.generate(size));
+      config = BenchmarkSupport.activate(file, Collections.<String, Object>emptyMap());
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException
+   {
+      config.dispose();
+      BenchmarkSupport.delete(file);
+   }
+
+   @Benchmark
+   public Map<String, String> getAllProps()
+   {
+      return config.getAllProps();
+   }
+
+   @Benchmark
+   public void getAllPropsAndIterate(Blackhole bh)
+   {
+      for (Map.Entry<String, String> entry : config.getAllProps().entrySet())
+      {
+         bh.consume(entry.getKey());
+         bh.consume(entry.getValue());
+      }
+   }
+}
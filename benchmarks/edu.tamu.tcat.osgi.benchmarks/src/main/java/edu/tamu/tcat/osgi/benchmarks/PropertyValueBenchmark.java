@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.tamu.tcat.osgi.config.file.SimpleFileConfigurationProperties;
+
+/**
+ * Measures {@link SimpleFileConfigurationProperties#getPropertyValue(String, Class)} for each
+ * supported value type, read concurrently by 1, 8 and 64 threads from a configuration of
+ * 1000 properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyValueBenchmark
+{
+   private static final String KEY = "benchmark.value";
+
+   /** Sample values by the simple name of their type. */
+   private static final Map<String, String> SAMPLES = new HashMap<String, String>();
+   private static final Map<String, Class<?>> TYPES = new HashMap<String, Class<?>>();
+   static
+   {
+      sample(String.class, "a string value");
+      sample(Byte.class, "42");
+      sample(Short.class, "4242");
+      sample(Integer.class, "424242");
+      sample(Long.class, "42424242424");
+      sample(Float.class, "4.2");
+      sample(Double.class, "4.2424242");
+      sample(Boolean.class, "true");
+      sample(Path.class, "/var/lib/app/data");
+      sample(URI.class, "https://example.org/api/v1");
+      sample(InetSocketAddress.class, "db.example.org:5432");
+      sample(Pattern.class, "[a-z]+-\\d{3}");
+      sample(TimeUnit.class, "SECONDS");
+   }
+
+   private static void sample(Class<?> type, String value)
+   {
+      TYPES.put(type.getSimpleName(), type);
+      SAMPLES.put(type.getSimpleName(), value);
+   }
+
+   @Param({"String", "Byte", "Short", "Integer", "Long", "Float", "Double", "Boolean",
+           "Path", "URI", "InetSocketAddress", "Pattern", "TimeUnit"})
+   public String type;
+
+   private Path file;
+   private SimpleFileConfigurationProperties config;
+   private Class<?> valueType;
+
+   @Setup(Level.Trial)
+   public void setup() throws IOException
+   {
+      valueType = TYPES.get(type);
+      Map<String, String> values = BenchmarkSupport.generate(1000);
+      values.put(KEY, SAMPLES.get(type));
+      file = BenchmarkSupport.writeProperties(values);
+      config = BenchmarkSupport.activate(file, Collections.<String, Object>emptyMap());
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException
+   {
+      config.dispose();
+      BenchmarkSupport.delete(file);
+   }
+
+   @Benchmark
+   @Threads(1)
+   public Object threads1()
+   {
+      return config.getPropertyValue(KEY, valueType);
+   }
+
+   @Benchmark
+   @Threads(8)
+   public Object threads8()
+   {
+      return config.getPropertyValue(KEY, valueType);
+   }
+
+   @Benchmark
+   @Threads(64)
+   public Object threads64()
+   {
+      return config.getPropertyValue(KEY, valueType);
+   }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.tamu.tcat.osgi.config.file.SimpleFileConfigurationProperties;
+
+/**
+ * Measures the latency of {@link SimpleFileConfigurationProperties#reloadProperties()} as a
+ * function of the number of properties in the file, with and without a precompiled
+ * snapshot file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReloadBenchmark
+{
+   @Param({"1000", "10000", "100000", "500000"})
+   public int size;
+
+   @Param({"false", "true"})
+   public boolean snapshot;
+
+   private Path file;
+   private SimpleFileConfigurationProperties config;
+
+   @Setup(Level.Trial)
+   public void setup() throws IOException, InterruptedException
+   {
+      file = BenchmarkSupport.writeProperties(BenchmarkSupport.generate(size));
+      Map<String, Object> params = new HashMap<String, Object>();
+      params.put(SimpleFileConfigurationProperties.PROP_SNAPSHOT, Boolean.valueOf(snapshot));
+      config = BenchmarkSupport.activate(file, params);
+      if (snapshot)
+         BenchmarkSupport.awaitSnapshotFile(file);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException
+   {
+      config.dispose();
+      BenchmarkSupport.delete(file);
+   }
+
+   @Benchmark
+   public SimpleFileConfigurationProperties reload()
+   {
+      config.reloadProperties();
+      return config;
+   }
+}
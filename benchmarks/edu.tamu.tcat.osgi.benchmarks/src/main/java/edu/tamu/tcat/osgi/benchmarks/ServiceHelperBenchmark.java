@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.tamu.tcat.osgi.services.util.ServiceHelper;
+
+/**
+ * Measures {@link ServiceHelper#getService(Class)} and
+ * {@link ServiceHelper#waitForService(Class, String, long)} for a service that is already
+ * registered, including creating and closing the helper as callers typically do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceHelperBenchmark
+{
+   public interface Greeter
+   {
+      String greet(String name);
+   }
+
+   private StubBundleContext context;
+
+   @Setup(Level.Trial)
+   public void setup()
+   {
+      context = new StubBundleContext();
+      context.addService(Greeter.class, new Greeter()
+      {
+         @Override
+         public String greet(String name)
+         {
+            return "Hello, " + name;
+         }
+      });
+   }
+
+   @Benchmark
+   public Greeter getService()
+   {
+      try (ServiceHelper helper = new ServiceHelper(context))
+      {
+         return helper.getService(Greeter.class);
+      }
+   }
+
+   @Benchmark
+   public Greeter waitForService()
+   {
+      try (ServiceHelper helper = new ServiceHelper(context))
+      {
+         return helper.waitForService(Greeter.class, null, 1000);
+      }
+   }
+}
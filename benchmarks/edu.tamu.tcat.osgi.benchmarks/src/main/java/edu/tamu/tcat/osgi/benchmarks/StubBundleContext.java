@@ -0,0 +1,287 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.benchmarks;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * A minimal, in-memory {@link BundleContext} that supports framework properties and the
+ * service lookups used by the bundles under test. Services are matched by class name only;
+ * filters are ignored. All other operations are unsupported.
+ */
+public class StubBundleContext implements BundleContext
+{
+   private final Map<String, String> properties = new ConcurrentHashMap<String, String>();
+   private final Map<String, List<StubServiceReference<?>>> services = new ConcurrentHashMap<String, List<StubServiceReference<?>>>();
+
+   /**
+    * Define a framework property. Properties that are not defined fall back to system properties.
+    */
+   public void setProperty(String key, String value)
+   {
+      properties.put(key, value);
+   }
+
+   /**
+    * Register a service under the given type.
+    */
+   public <S> ServiceReference<S> addService(Class<S> type, S service)
+   {
+      StubServiceReference<S> ref = new StubServiceReference<S>(service);
+      List<StubServiceReference<?>> refs = services.get(type.getName());
+      if (refs == null)
+      {
+         refs = new CopyOnWriteArrayList<StubServiceReference<?>>();
+         services.put(type.getName(), refs);
+      }
+      refs.add(ref);
+      return ref;
+   }
+
+   @Override
+   public String getProperty(String key)
+   {
+      String value = properties.get(key);
+      return (value != null) ? value : System.getProperty(key);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public <S> ServiceReference<S> getServiceReference(Class<S> clazz)
+   {
+      List<StubServiceReference<?>> refs = services.get(clazz.getName());
+      return (refs == null || refs.isEmpty()) ? null : (ServiceReference<S>)refs.get(0);
+   }
+
+   @Override
+   public ServiceReference<?> getServiceReference(String clazz)
+   {
+      List<StubServiceReference<?>> refs = services.get(clazz);
+      return (refs == null || refs.isEmpty()) ? null : refs.get(0);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public <S> Collection<ServiceReference<S>> getServiceReferences(Class<S> clazz, String filter)
+   {
+      List<ServiceReference<S>> result = new ArrayList<ServiceReference<S>>();
+      List<StubServiceReference<?>> refs = services.get(clazz.getName());
+      if (refs != null)
+      {
+         for (StubServiceReference<?> ref : refs)
+            result.add((ServiceReference<S>)ref);
+      }
+      return result;
+   }
+
+   @Override
+   public ServiceReference<?>[] getServiceReferences(String clazz, String filter)
+   {
+      List<StubServiceReference<?>> refs = services.get(clazz);
+      return (refs == null || refs.isEmpty()) ? null : refs.toArray(new ServiceReference<?>[refs.size()]);
+   }
+
+   @Override
+   public ServiceReference<?>[] getAllServiceReferences(String clazz, String filter)
+   {
+      return getServiceReferences(clazz, filter);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public <S> S getService(ServiceReference<S> reference)
+   {
+      return ((StubServiceReference<S>)reference).service;
+   }
+
+   @Override
+   public boolean ungetService(ServiceReference<?> reference)
+   {
+      return true;
+   }
+
+   @Override
+   public Bundle getBundle()
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public Bundle installBundle(String location, InputStream input)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public Bundle installBundle(String location)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public Bundle getBundle(long id)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public Bundle[] getBundles()
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public Bundle getBundle(String location)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addServiceListener(ServiceListener listener, String filter)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addServiceListener(ServiceListener listener)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeServiceListener(ServiceListener listener)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addBundleListener(BundleListener listener)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeBundleListener(BundleListener listener)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addFrameworkListener(FrameworkListener listener)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeFrameworkListener(FrameworkListener listener)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public ServiceRegistration<?> registerService(String[] clazzes, Object service, Dictionary<String, ?> properties)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public ServiceRegistration<?> registerService(String clazz, Object service, Dictionary<String, ?> properties)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public <S> ServiceRegistration<S> registerService(Class<S> clazz, S service, Dictionary<String, ?> properties)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public File getDataFile(String filename)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public Filter createFilter(String filter)
+   {
+      throw new UnsupportedOperationException();
+   }
+
+   private static final class StubServiceReference<S> implements ServiceReference<S>
+   {
+      private final S service;
+
+      StubServiceReference(S service)
+      {
+         this.service = service;
+      }
+
+      @Override
+      public Object getProperty(String key)
+      {
+         return null;
+      }
+
+      @Override
+      public String[] getPropertyKeys()
+      {
+         return new String[0];
+      }
+
+      @Override
+      public Bundle getBundle()
+      {
+         return null;
+      }
+
+      @Override
+      public Bundle[] getUsingBundles()
+      {
+         return null;
+      }
+
+      @Override
+      public boolean isAssignableTo(Bundle bundle, String className)
+      {
+         return true;
+      }
+
+      @Override
+      public int compareTo(Object reference)
+      {
+         return 0;
+      }
+   }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.cm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import edu.tamu.tcat.osgi.config.ConfigurationChangeEvent;
+import edu.tamu.tcat.osgi.config.ConfigurationProperties;
+import edu.tamu.tcat.osgi.config.file.SimpleFileConfigurationProperties;
+
+public class ConfigurationAdminBridgeTest
+{
+   private Path file;
+   private SimpleFileConfigurationProperties props;
+   private FakeConfigurationAdmin configAdmin;
+   private ConfigurationAdminBridge bridge;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      file = Files.createTempFile("cm-bridge", ".properties");
+      Files.write(file, "app.db.url=jdbc:x\napp.db.user=sa\napp.web.port=80\nother=1\n".getBytes(StandardCharsets.ISO_8859_1));
+
+      String propertyName = "edu.tamu.tcat.osgi.config.tests.cm." + System.nanoTime();
+      System.setProperty(propertyName, file.toString());
+      Map<String, Object> params = new HashMap<>();
+      params.put(SimpleFileConfigurationProperties.PROP_FILE, propertyName);
+      params.put(SimpleFileConfigurationProperties.PROP_JMX, Boolean.FALSE);
+      props = new SimpleFileConfigurationProperties();
+      props.activate(params);
+
+      configAdmin = new FakeConfigurationAdmin();
+      bridge = new ConfigurationAdminBridge();
+      bridge.setConfigurationProperties(props);
+      bridge.setConfigurationAdmin(configAdmin.proxy());
+
+      Map<String, Object> bridgeParams = new HashMap<>();
+      bridgeParams.put(ConfigurationAdminBridge.PROP_PID_PREFIX + "org.example.db", "app.db.");
+      bridgeParams.put(ConfigurationAdminBridge.PROP_PID_PREFIX + "org.example.web", "app.web.");
+      bridge.activate(bridgeParams);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      bridge.dispose();
+      props.dispose();
+      Files.deleteIfExists(file);
+   }
+
+   @Test
+   public void testPublishOnActivation()
+   {
+      Map<String, Object> db = new HashMap<>();
+      db.put("url", "jdbc:x");
+      db.put("user", "sa");
+      assertEquals(db, configAdmin.getProperties("org.example.db"));
+      assertEquals(Collections.<String, Object>singletonMap("port", "80"), configAdmin.getProperties("org.example.web"));
+      assertEquals(1, configAdmin.getUpdateCount("org.example.db"));
+      assertEquals(1, configAdmin.getUpdateCount("org.example.web"));
+   }
+
+   @Test
+   public void testUpdateOnlyAffectedPid()
+   {
+      props.setProperty("app.db.user", "admin");
+      bridge.configurationChanged(event(props, "app.db.user"));
+
+      assertEquals("admin", configAdmin.getProperties("org.example.db").get("user"));
+      assertEquals(2, configAdmin.getUpdateCount("org.example.db"));
+      assertEquals(1, configAdmin.getUpdateCount("org.example.web"));
+   }
+
+   @Test
+   public void testNoUpdateWithoutChange()
+   {
+      // a change reported for keys whose values are as published
+      bridge.configurationChanged(event(props, "app.db.url", "app.web.port"));
+      // a change to keys outside of any published prefix
+      props.setProperty("other", "2");
+      bridge.configurationChanged(event(props, "other"));
+
+      assertEquals(1, configAdmin.getUpdateCount("org.example.db"));
+      assertEquals(1, configAdmin.getUpdateCount("org.example.web"));
+   }
+
+   @Test
+   public void testNoUpdateWhenConfigurationAdminHoldsValues()
+   {
+      bridge.dispose();
+      bridge.activate(Collections.<String, Object>singletonMap(ConfigurationAdminBridge.PROP_PID_PREFIX + "org.example.db", "app.db."));
+
+      // published by the previous activation
+      assertEquals(1, configAdmin.getUpdateCount("org.example.db"));
+   }
+
+   @Test
+   public void testIgnoreEventsFromOtherSources()
+   {
+      props.setProperty("app.db.user", "admin");
+      bridge.configurationChanged(event(new SimpleFileConfigurationProperties(), "app.db.user"));
+      assertEquals("sa", configAdmin.getProperties("org.example.db").get("user"));
+
+      bridge.configurationChanged(event(props, "app.db.user"));
+      assertEquals("admin", configAdmin.getProperties("org.example.db").get("user"));
+   }
+
+   @Test
+   public void testNothingPublishedAfterDispose()
+   {
+      bridge.dispose();
+      props.setProperty("app.db.user", "admin");
+      bridge.configurationChanged(event(props, "app.db.user"));
+
+      assertEquals(1, configAdmin.getUpdateCount("org.example.db"));
+      assertEquals("sa", configAdmin.getProperties("org.example.db").get("user"));
+   }
+
+   private static ConfigurationChangeEvent event(ConfigurationProperties source, String... modified)
+   {
+      Set<String> keys = new HashSet<>();
+      Collections.addAll(keys, modified);
+      return new ConfigurationChangeEvent(source, Collections.<String>emptySet(), Collections.<String>emptySet(), keys);
+   }
+
+   /**
+    * An in-memory Configuration Admin that records updates. Implemented with proxies, so that
+    * it does not depend on the version of the Configuration Admin API.
+    */
+   private static final class FakeConfigurationAdmin implements InvocationHandler
+   {
+      private final Map<String, Hashtable<String, Object>> configurations = new HashMap<>();
+      private final Map<String, Integer> updates = new HashMap<>();
+
+      ConfigurationAdmin proxy()
+      {
+         return (ConfigurationAdmin)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ConfigurationAdmin.class }, this);
+      }
+
+      Map<String, Object> getProperties(String pid)
+      {
+         Hashtable<String, Object> properties = configurations.get(pid);
+         if (properties == null)
+            return null;
+
+         Map<String, Object> values = new HashMap<>(properties);
+         values.remove("service.pid");
+         return values;
+      }
+
+      int getUpdateCount(String pid)
+      {
+         Integer count = updates.get(pid);
+         return count == null ? 0 : count.intValue();
+      }
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args)
+      {
+         if (method.getName().equals("getConfiguration"))
+            return configuration((String)args[0]);
+
+         throw new UnsupportedOperationException(method.getName());
+      }
+
+      private Configuration configuration(final String pid)
+      {
+         InvocationHandler handler = new InvocationHandler()
+         {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+               switch (method.getName())
+               {
+                  case "getPid":
+                     return pid;
+
+                  case "getProperties":
+                     Hashtable<String, Object> properties = configurations.get(pid);
+                     return (properties == null) ? null : new Hashtable<String, Object>(properties);
+
+                  case "update":
+                     if (args == null || args.length == 0)
+                        return null;
+                     Hashtable<String, Object> updated = new Hashtable<>();
+                     @SuppressWarnings("unchecked")
+                     Dictionary<String, Object> values = (Dictionary<String, Object>)args[0];
+                     for (Enumeration<String> keys = values.keys(); keys.hasMoreElements();)
+                     {
+                        String key = keys.nextElement();
+                        updated.put(key, values.get(key));
+                     }
+                     updated.put("service.pid", pid);
+                     configurations.put(pid, updated);
+                     updates.put(pid, Integer.valueOf(getUpdateCount(pid) + 1));
+                     return null;
+
+                  default:
+                     throw new UnsupportedOperationException(method.getName());
+               }
+            }
+         };
+
+         return (Configuration)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Configuration.class }, handler);
+      }
+   }
+}
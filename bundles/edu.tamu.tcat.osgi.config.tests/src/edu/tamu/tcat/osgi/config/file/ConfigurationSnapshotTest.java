@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.osgi.config.ConfigurationSnapshot;
+import edu.tamu.tcat.osgi.config.DefaultSupplier;
+import edu.tamu.tcat.osgi.config.PropertyConverter;
+
+public class ConfigurationSnapshotTest
+{
+   private Path dir;
+   private Path file;
+   private SimpleFileConfigurationProperties props;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      file = TestConfigurations.write(dir.resolve("snapshots.properties"), "db.url=u1\ndb.user=sa\nweb.port=80\n");
+      props = TestConfigurations.activate(file);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      props.dispose();
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testUnaffectedByLaterChanges()
+   {
+      ConfigurationSnapshot before = props.snapshot();
+      props.begin().put("db.url", "u2").put("db.user", "admin").commit();
+      ConfigurationSnapshot after = props.snapshot();
+
+      assertEquals("u1", before.getPropertyValue("db.url", String.class));
+      assertEquals("sa", before.getPropertyValue("db.user", String.class));
+      assertEquals("u2", after.getPropertyValue("db.url", String.class));
+      assertEquals("admin", after.getPropertyValue("db.user", String.class));
+      assertTrue(after.getVersion() > before.getVersion());
+   }
+
+   @Test
+   public void testVersionUnchangedWithoutChanges() throws Exception
+   {
+      long version = props.snapshot().getVersion();
+      assertEquals(version, props.snapshot().getVersion());
+
+      // writes that change nothing publish nothing
+      props.setProperty("db.url", "u1");
+      props.begin().put("web.port", "80").commit();
+      assertEquals(version, props.snapshot().getVersion());
+
+      // a reload of changed content does
+      long modified = Files.getLastModifiedTime(file).toMillis();
+      TestConfigurations.write(file, "db.url=u3\n");
+      Files.setLastModifiedTime(file, FileTime.fromMillis(modified + 2000));
+      props.reloadProperties();
+      ConfigurationSnapshot reloaded = props.snapshot();
+      assertTrue(reloaded.getVersion() > version);
+      assertEquals("u3", reloaded.getPropertyValue("db.url", String.class));
+      assertEquals(null, reloaded.getPropertyValue("db.user", String.class, null));
+   }
+
+   @Test
+   public void testVersionChangesWithConverters()
+   {
+      ConfigurationSnapshot before = props.snapshot();
+      props.addConverter(new StringBuilderConverter());
+      ConfigurationSnapshot after = props.snapshot();
+
+      // converted values may differ, so the snapshot is new even though no value changed
+      assertTrue(after.getVersion() > before.getVersion());
+      assertEquals("sa", after.getPropertyValue("db.user", StringBuilder.class).toString());
+   }
+
+   @Test
+   public void testDefaults()
+   {
+      ConfigurationSnapshot snapshot = props.snapshot();
+      assertEquals(Integer.valueOf(80), snapshot.getPropertyValue("web.port", Integer.class, Integer.valueOf(8080)));
+      assertEquals(Integer.valueOf(8080), snapshot.getPropertyValue("web.host", Integer.class, Integer.valueOf(8080)));
+      assertEquals(Integer.valueOf(0), snapshot.getPropertyValue("db.url", Integer.class, Integer.valueOf(0)));
+
+      final ArrayList<String> supplied = new ArrayList<>();
+      DefaultSupplier<Integer> supplier = new DefaultSupplier<Integer>()
+      {
+         @Override
+         public Integer get()
+         {
+            supplied.add("called");
+            return Integer.valueOf(-1);
+         }
+      };
+      assertEquals(Integer.valueOf(80), snapshot.getPropertyValueOrElseGet("web.port", Integer.class, supplier));
+      assertTrue(supplied.isEmpty());
+      assertEquals(Integer.valueOf(-1), snapshot.getPropertyValueOrElseGet("web.host", Integer.class, supplier));
+      assertEquals(Arrays.asList("called"), supplied);
+   }
+
+   @Test
+   public void testSubset()
+   {
+      ConfigurationSnapshot snapshot = props.snapshot();
+      props.setProperty("db.pool", "5");
+
+      SortedMap<String, String> expected = new TreeMap<>();
+      expected.put("db.url", "u1");
+      expected.put("db.user", "sa");
+      assertEquals(expected, snapshot.subset("db."));
+      assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(snapshot.subset("db.").keySet()));
+      assertTrue(snapshot.subset("none.").isEmpty());
+
+      expected.put("db.pool", "5");
+      assertEquals(expected, props.snapshot().subset("db."));
+   }
+
+   @Test
+   public void testReadableAfterDispose()
+   {
+      ConfigurationSnapshot snapshot = props.snapshot();
+      props.dispose();
+      assertEquals("u1", snapshot.getPropertyValue("db.url", String.class));
+   }
+
+   private static final class StringBuilderConverter implements PropertyConverter<StringBuilder>
+   {
+      @Override
+      public Class<StringBuilder> getType()
+      {
+         return StringBuilder.class;
+      }
+
+      @Override
+      public StringBuilder convert(String value)
+      {
+         return new StringBuilder(value);
+      }
+   }
+}
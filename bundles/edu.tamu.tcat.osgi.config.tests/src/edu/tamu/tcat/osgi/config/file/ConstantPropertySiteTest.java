@@ -0,0 +1,158 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConstantPropertySiteTest
+{
+   private Path dir;
+   private Path file;
+   private SimpleFileConfigurationProperties props;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      file = TestConfigurations.write(dir.resolve("constants.properties"), "size=42\nenabled=true\nname=first\ninvalid=x\n");
+      props = TestConfigurations.activate(file);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      props.dispose();
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testPrimitiveTypes() throws Throwable
+   {
+      MethodHandle size = props.constant("size", int.class, Integer.valueOf(0)).dynamicInvoker();
+      MethodHandle enabled = props.constant("enabled", boolean.class, Boolean.FALSE).dynamicInvoker();
+      assertEquals(MethodType.methodType(int.class), size.type());
+
+      assertEquals(42, (int)size.invokeExact());
+      assertEquals(true, (boolean)enabled.invokeExact());
+   }
+
+   @Test
+   public void testDefaultValue() throws Throwable
+   {
+      MethodHandle undefined = props.constant("undefined", int.class, Integer.valueOf(7)).dynamicInvoker();
+      MethodHandle invalid = props.constant("invalid", int.class, Integer.valueOf(8)).dynamicInvoker();
+      MethodHandle nullDefault = props.constant("undefined", String.class, null).dynamicInvoker();
+
+      assertEquals(7, (int)undefined.invokeExact());
+      assertEquals(8, (int)invalid.invokeExact());
+      assertNull((String)nullDefault.invokeExact());
+   }
+
+   @Test
+   public void testInvalidatedBySetProperty() throws Throwable
+   {
+      MethodHandle size = props.constant("size", int.class, Integer.valueOf(0)).dynamicInvoker();
+      MethodHandle name = props.constant("name", String.class, null).dynamicInvoker();
+      MethodHandle added = props.constant("added", long.class, Long.valueOf(-1)).dynamicInvoker();
+
+      // repeated calls with no change
+      for (int ix = 0; ix < 10000; ix++)
+         assertEquals(42, (int)size.invokeExact());
+
+      props.setProperty("size", "43");
+      assertEquals(43, (int)size.invokeExact());
+      assertEquals("first", (String)name.invokeExact());
+      assertEquals(-1L, (long)added.invokeExact());
+
+      props.setProperty("added", "5");
+      props.setProperty("name", "second");
+      assertEquals(5L, (long)added.invokeExact());
+      assertEquals("second", (String)name.invokeExact());
+      assertEquals(43, (int)size.invokeExact());
+
+      props.begin().remove("size").commit();
+      assertEquals(0, (int)size.invokeExact());
+   }
+
+   @Test
+   public void testInvalidatedByReload() throws Throwable
+   {
+      MethodHandle size = props.constant("size", int.class, Integer.valueOf(0)).dynamicInvoker();
+      assertEquals(42, (int)size.invokeExact());
+
+      long modified = Files.getLastModifiedTime(file).toMillis();
+      TestConfigurations.write(file, "size=99\n");
+      Files.setLastModifiedTime(file, FileTime.fromMillis(modified + 2000));
+      props.reloadProperties();
+
+      assertEquals(99, (int)size.invokeExact());
+   }
+
+   @Test
+   public void testInvalidatedByDispose() throws Throwable
+   {
+      MethodHandle size = props.constant("size", int.class, Integer.valueOf(0)).dynamicInvoker();
+      assertEquals(42, (int)size.invokeExact());
+
+      props.dispose();
+      try
+      {
+         int value = (int)size.invokeExact();
+         fail("read " + value + " after dispose");
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void testInvalidArguments()
+   {
+      try
+      {
+         props.constant("size", int.class, null);
+         fail("primitive type without default");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+
+      try
+      {
+         props.constant("size", void.class, null);
+         fail("void type");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+   }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class InterpolationTest
+{
+   @Test
+   public void testChain()
+   {
+      Map<String, String> resolved = resolve("c", "${b}/z", "b", "${a}/y", "a", "x", "d", "${a}${b}");
+      assertEquals("x", resolved.get("a"));
+      assertEquals("x/y", resolved.get("b"));
+      assertEquals("x/y/z", resolved.get("c"));
+      assertEquals("xx/y", resolved.get("d"));
+   }
+
+   @Test
+   public void testNoPlaceholders()
+   {
+      Map<String, String> raw = values("a", "1", "b", "$ {a}", "c", "${unclosed");
+      assertEquals(raw, Interpolation.resolve(raw).getResolved());
+   }
+
+   @Test
+   public void testSelfReference()
+   {
+      Map<String, String> resolved = resolve("a", "x${a}", "b", "${a}", "c", "ok");
+      assertEquals("x${a}", resolved.get("a"));
+      assertEquals("${a}", resolved.get("b"));
+      assertEquals("ok", resolved.get("c"));
+   }
+
+   @Test
+   public void testMutualCycle()
+   {
+      Map<String, String> resolved = resolve("a", "${b}", "b", "${c}", "c", "${a}", "d", "${a}-${e}", "e", "e");
+      assertEquals("${b}", resolved.get("a"));
+      assertEquals("${c}", resolved.get("b"));
+      assertEquals("${a}", resolved.get("c"));
+      assertEquals("${a}-e", resolved.get("d"));
+   }
+
+   @Test
+   public void testUndefinedReferences()
+   {
+      Map<String, String> resolved = resolve("a", "${missing}", "b", "[${env:TCAT_CONFIG_TEST_UNDEFINED_VARIABLE}]", "c", "${}", "d", "${a}");
+      assertEquals("${missing}", resolved.get("a"));
+      assertEquals("[${env:TCAT_CONFIG_TEST_UNDEFINED_VARIABLE}]", resolved.get("b"));
+      assertEquals("${}", resolved.get("c"));
+      assertEquals("${missing}", resolved.get("d"));
+   }
+
+   @Test
+   public void testLongChain()
+   {
+      int length = 50000;
+      Map<String, String> raw = new HashMap<>();
+      raw.put("key0", "value");
+      for (int ix = 1; ix < length; ix++)
+         raw.put("key" + ix, "${key" + (ix - 1) + "}");
+
+      assertEquals("value", Interpolation.resolve(raw).getResolved().get("key" + (length - 1)));
+
+      // closing the chain into a single cycle
+      raw.put("key0", "${key" + (length - 1) + "}");
+      assertEquals("${key0}", Interpolation.resolve(raw).getResolved().get("key1"));
+   }
+
+   @Test
+   public void testUpdateDependents()
+   {
+      Map<String, String> raw = values("host", "h1", "port", "80", "url", "http://${host}:${port}/${path}", "path", "p", "link", "<${url}>", "other", "o");
+      Interpolation interpolation = Interpolation.resolve(raw);
+      assertEquals("<http://h1:80/p>", interpolation.getResolved().get("link"));
+
+      raw.put("host", "h2");
+      Interpolation updated = interpolation.update(raw, Collections.singleton("host"));
+      assertEquals("<http://h2:80/p>", updated.getResolved().get("link"));
+      assertEquals(Interpolation.resolve(raw).getResolved(), updated.getResolved());
+
+      // the previous instance is unchanged
+      assertEquals("<http://h1:80/p>", interpolation.getResolved().get("link"));
+
+      raw.remove("path");
+      raw.put("other", "${port}");
+      updated = updated.update(raw, Arrays.asList("path", "other"));
+      assertEquals("http://h2:80/${path}", updated.getResolved().get("url"));
+      assertEquals("80", updated.getResolved().get("other"));
+      assertEquals(Interpolation.resolve(raw).getResolved(), updated.getResolved());
+   }
+
+   @Test
+   public void testUpdateIntroducesAndBreaksCycle()
+   {
+      Map<String, String> raw = values("a", "${b}", "b", "1", "c", "${a}");
+      Interpolation interpolation = Interpolation.resolve(raw);
+      assertEquals("1", interpolation.getResolved().get("c"));
+
+      raw.put("b", "${c}");
+      interpolation = interpolation.update(raw, Collections.singleton("b"));
+      assertEquals("${b}", interpolation.getResolved().get("a"));
+      assertEquals("${a}", interpolation.getResolved().get("c"));
+      assertEquals(Interpolation.resolve(raw).getResolved(), interpolation.getResolved());
+
+      raw.put("b", "2");
+      interpolation = interpolation.update(raw, Collections.singleton("b"));
+      assertEquals("2", interpolation.getResolved().get("a"));
+      assertEquals("2", interpolation.getResolved().get("c"));
+      assertEquals(Interpolation.resolve(raw).getResolved(), interpolation.getResolved());
+   }
+
+   @Test
+   public void testSetPropertyUpdatesDependents() throws Exception
+   {
+      Path dir = TestConfigurations.createDirectory();
+      try
+      {
+         Path file = TestConfigurations.write(dir.resolve("interpolated.properties"), "host=h1\nurl=http://${host}/\nlink=<${url}>\n");
+         SimpleFileConfigurationProperties props = TestConfigurations.activate(file,
+               Collections.<String, Object>singletonMap(SimpleFileConfigurationProperties.PROP_INTERPOLATE, Boolean.TRUE));
+         try
+         {
+            assertEquals("<http://h1/>", props.getPropertyValue("link", String.class));
+
+            props.setProperty("host", "h2");
+            assertEquals("http://h2/", props.getPropertyValue("url", String.class));
+            assertEquals("<http://h2/>", props.getPropertyValue("link", String.class));
+
+            // placeholders are written back unexpanded
+            assertEquals("<${url}>", TestConfigurations.read(file).get("link"));
+         }
+         finally
+         {
+            props.dispose();
+         }
+      }
+      finally
+      {
+         TestConfigurations.delete(dir);
+      }
+   }
+
+   private static Map<String, String> resolve(String... pairs)
+   {
+      return Interpolation.resolve(values(pairs)).getResolved();
+   }
+
+   private static Map<String, String> values(String... pairs)
+   {
+      Map<String, String> values = new HashMap<>();
+      for (int ix = 0; ix < pairs.length; ix += 2)
+         values.put(pairs[ix], pairs[ix + 1]);
+      return values;
+   }
+}
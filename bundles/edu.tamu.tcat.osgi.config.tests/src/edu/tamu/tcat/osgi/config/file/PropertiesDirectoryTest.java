@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PropertiesDirectoryTest
+{
+   private Path dir;
+   private PropertiesDirectory directory;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      directory = new PropertiesDirectory(dir);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      directory.close();
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testMergeInNameOrder() throws Exception
+   {
+      TestConfigurations.write(dir.resolve("20-override.properties"), "a=2\nc=3\n");
+      TestConfigurations.write(dir.resolve("10-base.properties"), "a=1\nb=1\n");
+      TestConfigurations.write(dir.resolve("ignored.txt"), "a=x\n");
+
+      assertEquals(values("a", "2", "b", "1", "c", "3"), directory.load());
+   }
+
+   @Test
+   public void testFailedFragmentKeepsPreviousValues() throws Exception
+   {
+      TestConfigurations.write(dir.resolve("10-base.properties"), "a=1\n");
+      Path other = TestConfigurations.write(dir.resolve("20-other.properties"), "b=2\nc=3\n");
+      assertEquals(values("a", "1", "b", "2", "c", "3"), directory.load());
+
+      TestConfigurations.write(other, "b=\\u12G4\n");
+      assertTrue(directory.hasChanged());
+      assertEquals(values("a", "1", "b", "2", "c", "3"), directory.load());
+
+      // retried on the next load
+      assertTrue(directory.hasChanged());
+      TestConfigurations.write(other, "b=20\n");
+      assertEquals(values("a", "1", "b", "20"), directory.load());
+   }
+
+   @Test
+   public void testFailedNewFragmentIsOmitted() throws Exception
+   {
+      TestConfigurations.write(dir.resolve("10-base.properties"), "a=1\n");
+      assertEquals(values("a", "1"), directory.load());
+
+      TestConfigurations.write(dir.resolve("20-broken.properties"), "b=\\u00\n");
+      assertEquals(values("a", "1"), directory.load());
+   }
+
+   @Test
+   public void testParallelFailureKeepsPreviousValues() throws Exception
+   {
+      Map<String, String> expected = new HashMap<>();
+      for (int ix = 0; ix < 8; ix++)
+      {
+         TestConfigurations.write(dir.resolve("fragment-" + ix + ".properties"), "key" + ix + "=" + ix + "\n");
+         expected.put("key" + ix, String.valueOf(ix));
+      }
+      assertEquals(expected, directory.load());
+
+      for (int ix = 0; ix < 8; ix++)
+      {
+         String content = (ix % 2 == 0) ? "key" + ix + "=\\uZZZZ\n" : "key" + ix + "=changed\n";
+         TestConfigurations.write(dir.resolve("fragment-" + ix + ".properties"), content);
+         if (ix % 2 != 0)
+            expected.put("key" + ix, "changed");
+      }
+      assertEquals(expected, directory.load());
+   }
+
+   private static Map<String, String> values(String... pairs)
+   {
+      Map<String, String> values = new HashMap<>();
+      for (int ix = 0; ix < pairs.length; ix += 2)
+         values.put(pairs[ix], pairs[ix + 1]);
+      return values;
+   }
+}
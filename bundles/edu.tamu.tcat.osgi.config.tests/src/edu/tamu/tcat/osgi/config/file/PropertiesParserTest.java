@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link PropertiesParser} reads the same values as
+ * {@link Properties#load(java.io.InputStream)} for the same content.
+ */
+public class PropertiesParserTest
+{
+   @Test
+   public void testSimpleEntries()
+   {
+      assertParsesLikeProperties("a=1\nb=2\n");
+      assertParsesLikeProperties("a=1\na=2\n");
+      assertParsesLikeProperties("");
+      assertParsesLikeProperties("\n\n   \n");
+      assertParsesLikeProperties("# comment\n! comment\n  # indented comment\na=1");
+   }
+
+   @Test
+   public void testKeyTerminators()
+   {
+      assertParsesLikeProperties("a=1\nb:2\nc 3\nd\t4\ne\f5\n");
+      assertParsesLikeProperties("a = 1\nb : 2\nc   3\n");
+      assertParsesLikeProperties("a =:1\nb := 2\nc  = 3\nd : : 4\n");
+      assertParsesLikeProperties("a==1\nb::2\nc=\nd:\ne\n");
+      assertParsesLikeProperties("a\\=b=1\nc\\:d:2\ne\\ f 3\n");
+      assertParsesLikeProperties("  a=1\n\tb=2\n");
+   }
+
+   @Test
+   public void testLineEndings()
+   {
+      assertParsesLikeProperties("a=1\r\nb=2\r\n");
+      assertParsesLikeProperties("a=1\rb=2\r");
+      assertParsesLikeProperties("a=1\r\rb=2\n\r\nc=3");
+      assertParsesLikeProperties("a=1\r\n# comment\r\nb=2");
+   }
+
+   @Test
+   public void testContinuations()
+   {
+      assertParsesLikeProperties("a=1\\\n2\nb=3\n");
+      assertParsesLikeProperties("a=1\\\n    2\\\n\t3\n");
+      assertParsesLikeProperties("a=1\\\r\n  2\r\nb=3\r\n");
+      assertParsesLikeProperties("a=1\\\r  2\rb=3\r");
+      assertParsesLikeProperties("a=1\\\\\nb=2\n");
+      assertParsesLikeProperties("a=1\\\\\\\nb=2\n");
+      assertParsesLikeProperties("a\\\n  b=1\n");
+      assertParsesLikeProperties("a=1\\\n\nb=2\n");
+      assertParsesLikeProperties("# comment \\\na=1\n");
+   }
+
+   @Test
+   public void testCommentAfterContinuation()
+   {
+      assertParsesLikeProperties("a=1\\\n# not a comment\nb=2\n");
+      assertParsesLikeProperties("a=1\\\n  ! not a comment\nb=2\n");
+      assertParsesLikeProperties("a=1\\\r\n#=x\r\n");
+   }
+
+   @Test
+   public void testTrailingBackslashAtEnd()
+   {
+      assertParsesLikeProperties("a=1\\");
+      assertParsesLikeProperties("a=1\\\n");
+      assertParsesLikeProperties("a=1\\\n   ");
+      assertParsesLikeProperties("a\\");
+      assertParsesLikeProperties("a=1\\\\");
+   }
+
+   @Test
+   public void testEscapes()
+   {
+      assertParsesLikeProperties("a=\\t\\n\\f\\r\nb=\\x\\y\\\\\n");
+      assertParsesLikeProperties("a=\\u0041\\u00e9\\u20AC\n");
+      assertParsesLikeProperties("\\u0041\\u003d=\\u0020value\n");
+      assertParsesLikeProperties("a=\\\\u0041\n");
+      assertParsesLikeProperties("a=caf\u00e9\n");
+   }
+
+   @Test
+   public void testMalformedUnicodeEscapes()
+   {
+      assertRejectedLikeProperties("a=\\u00\n");
+      assertRejectedLikeProperties("a=\\u12G4\n");
+      assertRejectedLikeProperties("a=\\u");
+      assertRejectedLikeProperties("\\uXYZW=1\n");
+   }
+
+   private static void assertParsesLikeProperties(String content)
+   {
+      byte[] bytes = content.getBytes(StandardCharsets.ISO_8859_1);
+      assertEquals(describe(content), load(bytes), PropertiesParser.parse(bytes));
+   }
+
+   private static void assertRejectedLikeProperties(String content)
+   {
+      byte[] bytes = content.getBytes(StandardCharsets.ISO_8859_1);
+      try
+      {
+         load(bytes);
+         fail("Properties.load accepted " + describe(content));
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+
+      try
+      {
+         Map<String, String> values = PropertiesParser.parse(bytes);
+         fail("Parsed " + describe(content) + " as " + values);
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+   }
+
+   private static Map<String, String> load(byte[] content)
+   {
+      Properties props = new Properties();
+      try
+      {
+         props.load(new ByteArrayInputStream(content));
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException(e);
+      }
+
+      Map<String, String> values = new HashMap<>();
+      for (String key : props.stringPropertyNames())
+         values.put(key, props.getProperty(key));
+
+      return values;
+   }
+
+   private static String describe(String content)
+   {
+      return "[" + content.replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t").replace("\f", "\\f") + "]";
+   }
+}
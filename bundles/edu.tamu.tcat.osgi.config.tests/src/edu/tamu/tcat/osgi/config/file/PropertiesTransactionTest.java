@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.osgi.config.ConfigurationChangeEvent;
+import edu.tamu.tcat.osgi.config.ConfigurationChangeListener;
+
+public class PropertiesTransactionTest
+{
+   private Path dir;
+   private Path file;
+   private SimpleFileConfigurationProperties props;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      file = TestConfigurations.write(dir.resolve("tx.properties"), "a=1\nb=2\nc=3\n");
+      props = TestConfigurations.activate(file);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      props.dispose();
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testCommit() throws Exception
+   {
+      final BlockingQueue<ConfigurationChangeEvent> events = new LinkedBlockingQueue<>();
+      props.addChangeListener(new ConfigurationChangeListener()
+      {
+         @Override
+         public void configurationChanged(ConfigurationChangeEvent event)
+         {
+            events.add(event);
+         }
+      });
+
+      PropertiesTransaction tx = props.begin().put("a", "10").put("d", "4").remove("b");
+      assertEquals("uncommitted changes are not visible", "1", props.getPropertyValue("a", String.class));
+
+      tx.commit();
+      Map<String, String> expected = values("a", "10", "c", "3", "d", "4");
+      assertEquals(expected, props.getAllProps());
+      assertEquals(expected, TestConfigurations.read(file));
+
+      // a single event for all changes
+      ConfigurationChangeEvent event = events.poll(5, TimeUnit.SECONDS);
+      assertEquals(new HashSet<>(Arrays.asList("a", "b", "d")), event.getChangedKeys());
+      assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+   }
+
+   @Test
+   public void testClear() throws Exception
+   {
+      props.begin().put("x", "1").clear().put("y", "2").commit();
+      assertEquals(values("y", "2"), props.getAllProps());
+      assertEquals(values("y", "2"), TestConfigurations.read(file));
+   }
+
+   @Test
+   public void testNoOpCommitDoesNotWrite() throws Exception
+   {
+      long modified = Files.getLastModifiedTime(file).toMillis();
+      Files.setLastModifiedTime(file, FileTime.fromMillis(modified - 10000));
+
+      props.begin().put("a", "1").remove("undefined").commit();
+      assertEquals(modified - 10000, Files.getLastModifiedTime(file).toMillis());
+   }
+
+   @Test
+   public void testRollbackOnWriteFailure() throws Exception
+   {
+      // the properties file can no longer be replaced
+      Files.delete(file);
+      Files.createDirectory(file);
+      Files.createFile(file.resolve("blocker"));
+
+      try
+      {
+         props.begin().put("a", "10").remove("b").commit();
+         fail("commit succeeded");
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+
+      assertEquals(values("a", "1", "b", "2", "c", "3"), props.getAllProps());
+      assertTrue(Files.isDirectory(file));
+   }
+
+   @Test
+   public void testDiscardedTransaction()
+   {
+      props.begin().put("a", "10").remove("b");
+      assertEquals(values("a", "1", "b", "2", "c", "3"), props.getAllProps());
+   }
+
+   @Test
+   public void testInvalidEdits()
+   {
+      PropertiesTransaction tx = props.begin();
+      try
+      {
+         tx.put("a", null);
+         fail("null value accepted");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+
+      try
+      {
+         tx.put(" ", "1");
+         fail("blank key accepted");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+
+      tx.put("a", "10").commit();
+      try
+      {
+         tx.commit();
+         fail("committed twice");
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+      assertEquals("10", props.getPropertyValue("a", String.class));
+   }
+
+   private static Map<String, String> values(String... pairs)
+   {
+      Map<String, String> values = new HashMap<>();
+      for (int ix = 0; ix < pairs.length; ix += 2)
+         values.put(pairs[ix], pairs[ix + 1]);
+      return values;
+   }
+}
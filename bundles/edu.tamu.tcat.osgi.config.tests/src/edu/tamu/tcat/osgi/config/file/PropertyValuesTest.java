@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.osgi.config.ConfigurationSnapshot;
+import edu.tamu.tcat.osgi.config.PropertyValues;
+
+public class PropertyValuesTest
+{
+   private Path dir;
+   private SimpleFileConfigurationProperties props;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      Path file = TestConfigurations.write(dir.resolve("bulk.properties"), "name=server\nport=8080\nratio=0.5\nenabled=true\ninvalid=x\n");
+      props = TestConfigurations.activate(file);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      props.dispose();
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testTypedValues()
+   {
+      Map<String, Class<?>> request = new HashMap<>();
+      request.put("name", String.class);
+      request.put("port", Integer.class);
+      request.put("ratio", Double.class);
+      request.put("enabled", Boolean.class);
+
+      PropertyValues values = props.getPropertyValues(request);
+      assertEquals(4, values.size());
+      assertEquals("server", values.get("name", String.class));
+      assertEquals(Integer.valueOf(8080), values.get("port", Integer.class));
+      assertEquals(Double.valueOf(0.5), values.get("ratio", Double.class));
+      assertEquals(Boolean.TRUE, values.get("enabled", Boolean.class));
+   }
+
+   @Test
+   public void testMissingAndInvalidValues()
+   {
+      Map<String, Class<?>> request = new HashMap<>();
+      request.put("invalid", Integer.class);
+      request.put("undefined", String.class);
+      request.put("port", Long.class);
+
+      // a failed conversion does not prevent other values from being read
+      PropertyValues values = props.getPropertyValues(request);
+      assertNull(values.get("invalid", Integer.class));
+      assertNull(values.get("undefined", String.class));
+      assertEquals(Long.valueOf(8080), values.get("port", Long.class));
+
+      assertEquals(Integer.valueOf(1), values.get("invalid", Integer.class, Integer.valueOf(1)));
+      assertEquals("none", values.get("undefined", String.class, "none"));
+      assertEquals(Long.valueOf(8080), values.get("port", Long.class, Long.valueOf(1)));
+   }
+
+   @Test
+   public void testUnrequestedProperties()
+   {
+      PropertyValues values = props.getPropertyValues(Collections.<String, Class<?>>singletonMap("port", Integer.class));
+      try
+      {
+         values.get("name", String.class);
+         fail("read a property that was not requested");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+
+      try
+      {
+         values.get("port", Long.class);
+         fail("read a property as a type other than requested");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void testEmptyRequest()
+   {
+      PropertyValues values = props.getPropertyValues(Collections.<String, Class<?>>emptyMap());
+      assertEquals(0, values.size());
+      assertEquals(props.snapshot().getVersion(), values.getVersion());
+   }
+
+   @Test
+   public void testReadFromOneSnapshot()
+   {
+      Map<String, Class<?>> request = new HashMap<>();
+      request.put("name", String.class);
+      request.put("port", Integer.class);
+
+      ConfigurationSnapshot snapshot = props.snapshot();
+      PropertyValues current = props.getPropertyValues(request);
+      assertEquals(snapshot.getVersion(), current.getVersion());
+
+      props.begin().put("name", "other").put("port", "9090").commit();
+      PropertyValues fromSnapshot = snapshot.getPropertyValues(request);
+      PropertyValues updated = props.getPropertyValues(request);
+
+      assertEquals(snapshot.getVersion(), fromSnapshot.getVersion());
+      assertEquals("server", fromSnapshot.get("name", String.class));
+      assertEquals(Integer.valueOf(8080), fromSnapshot.get("port", Integer.class));
+
+      assertEquals(props.snapshot().getVersion(), updated.getVersion());
+      assertEquals("other", updated.get("name", String.class));
+      assertEquals(Integer.valueOf(9090), updated.get("port", Integer.class));
+
+      // values already read are unaffected
+      assertEquals("server", current.get("name", String.class));
+   }
+
+   @Test
+   public void testManyProperties()
+   {
+      PropertiesTransaction tx = props.begin();
+      Map<String, Class<?>> request = new HashMap<>();
+      for (int ix = 0; ix < 500; ix++)
+      {
+         tx.put("key." + ix, String.valueOf(ix));
+         request.put("key." + ix, Integer.class);
+      }
+      tx.commit();
+
+      PropertyValues values = props.getPropertyValues(request);
+      assertEquals(500, values.size());
+      for (int ix = 0; ix < 500; ix++)
+         assertEquals(Integer.valueOf(ix), values.get("key." + ix, Integer.class));
+   }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.osgi.config.DefaultSupplier;
+
+public class SimpleFileConfigurationPropertiesTest
+{
+   private Path dir;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testDefaultBeforeActivation()
+   {
+      SimpleFileConfigurationProperties props = new SimpleFileConfigurationProperties();
+      assertEquals("fallback", props.getPropertyValue("a", String.class, "fallback"));
+      assertEquals(Integer.valueOf(3), props.getPropertyValueOrElseGet("a", Integer.class, supply(3)));
+   }
+
+   @Test
+   public void testDefaultAfterDispose() throws Exception
+   {
+      SimpleFileConfigurationProperties props = TestConfigurations.activate(TestConfigurations.write(dir.resolve("a.properties"), "a=1\n"));
+      assertEquals(Integer.valueOf(1), props.getPropertyValue("a", Integer.class, 3));
+
+      props.dispose();
+      assertEquals(Integer.valueOf(3), props.getPropertyValue("a", Integer.class, 3));
+      assertEquals(Integer.valueOf(4), props.getPropertyValueOrElseGet("a", Integer.class, supply(4)));
+   }
+
+   @Test
+   public void testReloadAfterDispose() throws Exception
+   {
+      Path file = TestConfigurations.write(dir.resolve("a.properties"), "a=1\n");
+      SimpleFileConfigurationProperties props = TestConfigurations.activate(file,
+            Collections.<String, Object>singletonMap(SimpleFileConfigurationProperties.PROP_SNAPSHOT, Boolean.TRUE));
+      props.dispose();
+
+      TestConfigurations.write(file, "a=2\n");
+      props.reloadProperties();
+      assertEquals("d", props.getPropertyValue("a", String.class, "d"));
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void testNoDefaultBeforeActivation()
+   {
+      new SimpleFileConfigurationProperties().getPropertyValue("a", String.class);
+   }
+
+   private static DefaultSupplier<Integer> supply(final int value)
+   {
+      return new DefaultSupplier<Integer>()
+      {
+         @Override
+         public Integer get()
+         {
+            return Integer.valueOf(value);
+         }
+      };
+   }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotFileTest
+{
+   private Path dir;
+   private Path file;
+   private Path snapshotFile;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      file = dir.resolve("snapshot.properties");
+      snapshotFile = SnapshotFile.locate(file);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testLookups() throws Exception
+   {
+      Map<String, String> values = new HashMap<>();
+      for (int ix = 0; ix < 1000; ix++)
+         values.put("key." + ix, "value " + ix);
+      values.put("", "empty key");
+      values.put("empty.value", "");
+      values.put("caf\u00e9", "\u20ac");
+
+      Map<String, String> read = writeAndRead(values);
+      assertEquals(values.size(), read.size());
+      for (Map.Entry<String, String> entry : values.entrySet())
+      {
+         assertTrue(read.containsKey(entry.getKey()));
+         assertEquals(entry.getValue(), read.get(entry.getKey()));
+      }
+
+      assertNull(read.get("key.1000"));
+      assertNull(read.get("key."));
+      assertNull(read.get("cafe"));
+      assertNull(read.get(Integer.valueOf(1)));
+      assertFalse(read.containsKey("KEY.1"));
+   }
+
+   @Test
+   public void testIterationInKeyOrder() throws Exception
+   {
+      Map<String, String> values = new HashMap<>();
+      for (int ix = 0; ix < 100; ix++)
+         values.put("k" + ix, String.valueOf(ix));
+
+      List<String> keys = new ArrayList<>();
+      Map<String, String> iterated = new HashMap<>();
+      for (Map.Entry<String, String> entry : writeAndRead(values).entrySet())
+      {
+         keys.add(entry.getKey());
+         iterated.put(entry.getKey(), entry.getValue());
+      }
+
+      List<String> sorted = new ArrayList<>(values.keySet());
+      Collections.sort(sorted);
+      assertEquals(sorted, keys);
+      assertEquals(values, iterated);
+   }
+
+   @Test
+   public void testEmpty() throws Exception
+   {
+      Map<String, String> read = writeAndRead(Collections.<String, String>emptyMap());
+      assertTrue(read.isEmpty());
+      assertNull(read.get("a"));
+   }
+
+   @Test
+   public void testUnpairedSurrogates() throws Exception
+   {
+      // a properties file may hold any char sequence as unicode escapes
+      TestConfigurations.write(file, "high=a\\uD800b\nlow=\\uDC00\nreversed\\uDFFF\\uD83D=x\\uDFFF\\uD83D\npair=\\uD83D\\uDE00\nnul=\\u0000\n");
+      Map<String, String> parsed = TestConfigurations.read(file);
+
+      SnapshotFile.write(snapshotFile, FileStamp.read(file), parsed);
+      SnapshotFile snapshot = SnapshotFile.read(snapshotFile, file);
+      assertNotNull(snapshot);
+      assertEquals(parsed, new HashMap<>(snapshot.getValues()));
+      assertEquals("a\uD800b", snapshot.getValues().get("high"));
+      assertEquals("x\uDFFF\uD83D", snapshot.getValues().get("reversed\uDFFF\uD83D"));
+   }
+
+   @Test
+   public void testStaleSize() throws Exception
+   {
+      writeAndRead(Collections.singletonMap("a", "1"));
+
+      long modified = Files.getLastModifiedTime(file).toMillis();
+      TestConfigurations.write(file, "a=12\n");
+      Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+      assertNull(SnapshotFile.read(snapshotFile, file));
+   }
+
+   @Test
+   public void testStaleModificationTime() throws Exception
+   {
+      writeAndRead(Collections.singletonMap("a", "1"));
+
+      long modified = Files.getLastModifiedTime(file).toMillis();
+      Files.setLastModifiedTime(file, FileTime.fromMillis(modified + 2000));
+      assertNull(SnapshotFile.read(snapshotFile, file));
+   }
+
+   @Test
+   public void testStaleContent() throws Exception
+   {
+      writeAndRead(Collections.singletonMap("a", "1"));
+
+      // same size and modification time, different content
+      long modified = Files.getLastModifiedTime(file).toMillis();
+      TestConfigurations.write(file, "a=2\n");
+      Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+      assertNull(SnapshotFile.read(snapshotFile, file));
+   }
+
+   @Test
+   public void testUnrecognizedFiles() throws Exception
+   {
+      TestConfigurations.write(file, "a=1\n");
+      assertNull("missing snapshot file", SnapshotFile.read(snapshotFile, file));
+
+      Files.write(snapshotFile, new byte[0]);
+      assertNull("empty snapshot file", SnapshotFile.read(snapshotFile, file));
+
+      Files.write(snapshotFile, "a=1\nb=2\nc=3\nd=4\ne=5\nf=6\ng=7\nh=8\n".getBytes("ISO-8859-1"));
+      assertNull("not a snapshot file", SnapshotFile.read(snapshotFile, file));
+
+      // a valid header with a truncated table
+      SnapshotFile.write(snapshotFile, FileStamp.read(file), Collections.singletonMap("a", "1"));
+      byte[] bytes = Files.readAllBytes(snapshotFile);
+      byte[] truncated = new byte[bytes.length - 12];
+      System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+      Files.write(snapshotFile, truncated);
+      assertNull("truncated snapshot file", SnapshotFile.read(snapshotFile, file));
+   }
+
+   /**
+    * Write a snapshot file of the values, then read it back. The snapshot file describes a
+    * properties file holding {@code a=1}; only its stamp matters here.
+    */
+   private Map<String, String> writeAndRead(Map<String, String> values) throws Exception
+   {
+      TestConfigurations.write(file, "a=1\n");
+
+      SnapshotFile.write(snapshotFile, FileStamp.read(file), values);
+      SnapshotFile snapshot = SnapshotFile.read(snapshotFile, file);
+      assertNotNull(snapshot);
+      assertEquals(FileStamp.read(file), snapshot.getStamp());
+      return snapshot.getValues();
+   }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.osgi.config.PropertyConverter;
+import edu.tamu.tcat.osgi.config.PropertyHandle;
+
+public class SnapshotPropertyHandleTest
+{
+   private Path dir;
+   private SimpleFileConfigurationProperties props;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      Path file = TestConfigurations.write(dir.resolve("handles.properties"),
+            "int=42\n"
+            + "negative=-7\n"
+            + "big=3000000000\n"
+            + "max=9223372036854775807\n"
+            + "fraction=2.5\n"
+            + "whole=2.0\n"
+            + "huge=1e19\n"
+            + "wide=18446744073709551616\n"
+            + "scaled=1.000\n"
+            + "flag=true\n");
+      props = TestConfigurations.activate(file);
+      props.addConverter(new Converter<>(BigInteger.class));
+      props.addConverter(new Converter<>(BigDecimal.class));
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      props.dispose();
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testGetInt()
+   {
+      assertEquals(42, props.handle("int", Integer.class, null).getInt());
+      assertEquals(-7, props.handle("negative", Long.class, null).getInt());
+      assertEquals(2, props.handle("whole", Double.class, null).getInt());
+      assertEquals(1, props.handle("scaled", BigDecimal.class, null).getInt());
+      assertInexactInt(props.handle("big", Long.class, null));
+      assertInexactInt(props.handle("fraction", Double.class, null));
+      assertInexactInt(props.handle("wide", BigInteger.class, null));
+   }
+
+   @Test
+   public void testGetLong()
+   {
+      assertEquals(3000000000L, props.handle("big", Long.class, null).getLong());
+      assertEquals(Long.MAX_VALUE, props.handle("max", Long.class, null).getLong());
+      assertEquals(Long.MAX_VALUE, props.handle("max", BigInteger.class, null).getLong());
+      assertEquals(2L, props.handle("whole", Float.class, null).getLong());
+      assertInexactLong(props.handle("fraction", Double.class, null));
+      assertInexactLong(props.handle("fraction", Float.class, null));
+      assertInexactLong(props.handle("fraction", BigDecimal.class, null));
+      assertInexactLong(props.handle("huge", Double.class, null));
+      assertInexactLong(props.handle("wide", BigInteger.class, null));
+   }
+
+   @Test
+   public void testNotNumeric()
+   {
+      PropertyHandle<Boolean> flag = props.handle("flag", Boolean.class, null);
+      assertEquals(true, flag.getBoolean());
+      try
+      {
+         flag.getLong();
+         fail("boolean read as long");
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void testDefaultValue()
+   {
+      assertEquals(5, props.handle("undefined", Integer.class, 5).getInt());
+      assertEquals(5L, props.handle("undefined", Double.class, 5.0).getLong());
+   }
+
+   private static void assertInexactInt(PropertyHandle<?> handle)
+   {
+      try
+      {
+         int value = handle.getInt();
+         fail(handle + " read as int " + value);
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+   }
+
+   private static void assertInexactLong(PropertyHandle<?> handle)
+   {
+      try
+      {
+         long value = handle.getLong();
+         fail(handle + " read as long " + value);
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+   }
+
+   private static final class Converter<T> implements PropertyConverter<T>
+   {
+      private final Class<T> type;
+
+      Converter(Class<T> type)
+      {
+         this.type = type;
+      }
+
+      @Override
+      public Class<T> getType()
+      {
+         return type;
+      }
+
+      @Override
+      public T convert(String value) throws Exception
+      {
+         return type.getConstructor(String.class).newInstance(value);
+      }
+   }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates properties files and activates {@link SimpleFileConfigurationProperties} instances
+ * over them, the way DS would. The location of each file is published as a framework property
+ * under a name unique to the instance.
+ */
+final class TestConfigurations
+{
+   private static final AtomicInteger counter = new AtomicInteger();
+
+   private TestConfigurations()
+   {
+   }
+
+   /**
+    * @return A new, empty temporary directory. Remove it with {@link #delete(Path)}.
+    */
+   static Path createDirectory() throws IOException
+   {
+      return Files.createTempDirectory("tcat-config-test");
+   }
+
+   static Path write(Path file, String content) throws IOException
+   {
+      Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+      return file;
+   }
+
+   /**
+    * @return The values in a properties file, as {@link Properties#load(java.io.InputStream)} reads them.
+    */
+   static Map<String, String> read(Path file) throws IOException
+   {
+      Properties props = new Properties();
+      props.load(new ByteArrayInputStream(Files.readAllBytes(file)));
+
+      Map<String, String> values = new HashMap<>();
+      for (String key : props.stringPropertyNames())
+         values.put(key, props.getProperty(key));
+
+      return values;
+   }
+
+   /**
+    * Activate a service for the given file or directory, with JMX registration disabled.
+    *
+    * @param params Additional activation parameters, may be empty.
+    */
+   static SimpleFileConfigurationProperties activate(Path location, Map<String, Object> params)
+   {
+      String propertyName = "edu.tamu.tcat.osgi.config.tests.file." + counter.incrementAndGet();
+      System.setProperty(propertyName, location.toString());
+
+      Map<String, Object> config = new HashMap<>(params);
+      config.put(SimpleFileConfigurationProperties.PROP_FILE, propertyName);
+      if (!config.containsKey(SimpleFileConfigurationProperties.PROP_JMX))
+         config.put(SimpleFileConfigurationProperties.PROP_JMX, Boolean.FALSE);
+
+      SimpleFileConfigurationProperties props = new SimpleFileConfigurationProperties();
+      props.activate(config);
+      return props;
+   }
+
+   static SimpleFileConfigurationProperties activate(Path location)
+   {
+      return activate(location, new HashMap<String, Object>());
+   }
+
+   /**
+    * Delete a directory created by {@link #createDirectory()}. Snapshot files are written in
+    * the background and may still appear or disappear while the directory is deleted, so
+    * deletion is retried briefly.
+    */
+   static void delete(Path dir) throws IOException, InterruptedException
+   {
+      for (int attempt = 1; ; attempt++)
+      {
+         try
+         {
+            deleteTree(dir);
+            return;
+         }
+         catch (IOException e)
+         {
+            if (attempt == 10)
+               throw e;
+            Thread.sleep(50);
+         }
+      }
+   }
+
+   private static void deleteTree(Path dir) throws IOException
+   {
+      if (dir == null || !Files.exists(dir))
+         return;
+
+      Files.walkFileTree(dir, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            Files.deleteIfExists(file);
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException
+         {
+            Files.delete(d);
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+}
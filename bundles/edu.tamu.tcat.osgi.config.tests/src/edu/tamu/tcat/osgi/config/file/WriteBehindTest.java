@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteBehindTest
+{
+   private Path dir;
+   private Path file;
+   private SimpleFileConfigurationProperties props;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = TestConfigurations.createDirectory();
+      file = TestConfigurations.write(dir.resolve("deferred.properties"), "a=1\n");
+
+      // long enough that no scheduled write runs during a test
+      Map<String, Object> params = new HashMap<>();
+      params.put(SimpleFileConfigurationProperties.PROP_WRITE_BEHIND, Long.valueOf(TimeUnit.MINUTES.toMillis(10)));
+      props = TestConfigurations.activate(file, params);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      props.dispose();
+      TestConfigurations.delete(dir);
+   }
+
+   @Test
+   public void testChangesPublishedBeforeWrite() throws Exception
+   {
+      props.setProperty("a", "2");
+      props.setProperty("b", "3");
+
+      assertEquals("2", props.getPropertyValue("a", String.class));
+      assertEquals(values("a", "1"), TestConfigurations.read(file));
+   }
+
+   @Test
+   public void testFlush() throws Exception
+   {
+      for (int ix = 0; ix < 100; ix++)
+         props.setProperty("key" + ix, String.valueOf(ix));
+
+      props.flush().get(5, TimeUnit.SECONDS);
+      assertEquals(props.getAllProps(), TestConfigurations.read(file));
+
+      // nothing pending
+      props.flush().get(5, TimeUnit.SECONDS);
+      assertEquals(props.getAllProps(), TestConfigurations.read(file));
+   }
+
+   @Test
+   public void testWriteOnDispose() throws Exception
+   {
+      props.setProperty("a", "2");
+      props.begin().put("b", "3").remove("a").put("c", "4").commit();
+      Map<String, String> expected = new HashMap<>(props.getAllProps());
+
+      props.dispose();
+      assertEquals(values("b", "3", "c", "4"), expected);
+      assertEquals(expected, TestConfigurations.read(file));
+   }
+
+   @Test
+   public void testWriteOnDisposeWithSnapshotFile() throws Exception
+   {
+      props.dispose();
+
+      Map<String, Object> params = new HashMap<>();
+      params.put(SimpleFileConfigurationProperties.PROP_WRITE_BEHIND, Long.valueOf(TimeUnit.MINUTES.toMillis(10)));
+      params.put(SimpleFileConfigurationProperties.PROP_SNAPSHOT, Boolean.TRUE);
+      props = TestConfigurations.activate(file, params);
+      props.setProperty("a", "2");
+      props.dispose();
+
+      assertEquals(values("a", "2"), TestConfigurations.read(file));
+
+      // the snapshot file written while disposing describes the written file
+      SnapshotFile snapshot = SnapshotFile.read(SnapshotFile.locate(file), file);
+      assertEquals(values("a", "2"), new HashMap<>(snapshot.getValues()));
+   }
+
+   private static Map<String, String> values(String... pairs)
+   {
+      Map<String, String> values = new HashMap<>();
+      for (int ix = 0; ix < pairs.length; ix += 2)
+         values.put(pairs[ix], pairs[ix + 1]);
+      return values;
+   }
+}
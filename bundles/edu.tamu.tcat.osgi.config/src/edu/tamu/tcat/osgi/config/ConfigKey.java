@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a method of a configuration interface to a configuration property.
+ * <p>
+ * Interfaces whose methods carry this annotation are implemented at build time by the
+ * configuration annotation processor ({@code edu.tamu.tcat.osgi.config.processor}). For an
+ * interface {@code DbConfig}, the processor generates a class {@code Config_DbConfig} in the
+ * same package with a public constructor that accepts a {@link ConfigurationProperties}:
+ *
+ * <pre>
+ * public interface DbConfig
+ * {
+ *    &#64;ConfigKey("db.url")
+ *    URI url();
+ *
+ *    &#64;ConfigKey(value = "db.pool.size", defaultValue = "10")
+ *    int poolSize();
+ * }
+ *
+ * DbConfig db = new Config_DbConfig(config);
+ * </pre>
+ *
+ * The generated class evaluates all properties together against a single
+ * {@link ConfigurationSnapshot} the first time a method is called after the configuration
+ * changes, and otherwise returns the retained values without lookup, conversion or allocation.
+ * It uses no reflection.
+ * <p>
+ * Each method must take no arguments and return a type supported by the converters of the
+ * configuration service. Methods that return {@code null} if the property is undefined or
+ * cannot be converted may return any reference type; methods that return a primitive type
+ * throw {@link IllegalStateException} instead, unless a default value is given.
+ *
+ * @since 2.0
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface ConfigKey
+{
+   /**
+    * @return The name of the property.
+    */
+   String value();
+
+   /**
+    * The value to return if the property is undefined or cannot be converted, written as it
+    * would appear in a properties file. Supported only for {@code String}, primitive and
+    * primitive wrapper types, and checked when the interface is compiled. At most one value
+    * may be given; none, the default, means that the property has no default value.
+    *
+    * @return The default value, if any.
+    */
+   String[] defaultValue() default {};
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Describes a change to the values of a {@link ConfigurationProperties} service as the sets of
+ * keys that were added, removed and modified relative to the previous values.
+ *
+ * @see ConfigurationChangeListener
+ * @since 2.0
+ */
+public final class ConfigurationChangeEvent
+{
+   private final ConfigurationProperties source;
+   private final Set<String> added;
+   private final Set<String> removed;
+   private final Set<String> modified;
+
+   /**
+    * @param source The service whose values changed.
+    * @param added Keys that did not previously have a value.
+    * @param removed Keys that no longer have a value.
+    * @param modified Keys whose value changed.
+    */
+   public ConfigurationChangeEvent(ConfigurationProperties source, Set<String> added, Set<String> removed, Set<String> modified)
+   {
+      this.source = Objects.requireNonNull(source, "source is null");
+      this.added = Collections.unmodifiableSet(new HashSet<String>(added));
+      this.removed = Collections.unmodifiableSet(new HashSet<String>(removed));
+      this.modified = Collections.unmodifiableSet(new HashSet<String>(modified));
+   }
+
+   /**
+    * @return The service whose values changed.
+    */
+   public ConfigurationProperties getSource()
+   {
+      return source;
+   }
+
+   /**
+    * @return The keys that did not previously have a value. Never {@code null}.
+    */
+   public Set<String> getAddedKeys()
+   {
+      return added;
+   }
+
+   /**
+    * @return The keys that no longer have a value. Never {@code null}.
+    */
+   public Set<String> getRemovedKeys()
+   {
+      return removed;
+   }
+
+   /**
+    * @return The keys that have a different value than before. Never {@code null}.
+    */
+   public Set<String> getModifiedKeys()
+   {
+      return modified;
+   }
+
+   /**
+    * @return All keys that were added, removed or modified. Never {@code null}.
+    */
+   public Set<String> getChangedKeys()
+   {
+      Set<String> changed = new HashSet<String>(added);
+      changed.addAll(removed);
+      changed.addAll(modified);
+      return Collections.unmodifiableSet(changed);
+   }
+
+   /**
+    * @return {@code true} if the given key was added, removed or modified.
+    */
+   public boolean isChanged(String key)
+   {
+      return added.contains(key) || removed.contains(key) || modified.contains(key);
+   }
+
+   /**
+    * @return {@code true} if no keys changed.
+    */
+   public boolean isEmpty()
+   {
+      return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ConfigurationChangeEvent [added=" + added + ", removed=" + removed + ", modified=" + modified + "]";
+   }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+/**
+ * Receives notification that the values of a {@link ConfigurationProperties} service have
+ * changed.
+ * <p>
+ * Listeners may be registered directly with a service implementation that supports them or
+ * published as OSGi services to be picked up using the whiteboard pattern. Notifications are
+ * delivered asynchronously on a thread owned by the notifying service, in the order in which
+ * the changes were made. Listeners should return promptly; a slow listener delays delivery of
+ * later notifications but never the changes themselves.
+ *
+ * @since 2.0
+ */
+public interface ConfigurationChangeListener
+{
+   /**
+    * Called after one or more configuration values have changed.
+    *
+    * @param event Describes the keys that changed. Will not be {@code null} or empty.
+    */
+   void configurationChanged(ConfigurationChangeEvent event);
+}
@@ -16,8 +16,16 @@
 
 package edu.tamu.tcat.osgi.config;
 
+import java.util.Map;
+import java.util.SortedMap;
+
 /**
  * A service API to access some scope of configuration properties.
+ * <p>
+ * This interface is called by clients and implemented by configuration providers. Methods may
+ * be added to it, which breaks existing implementations, so any such addition is released with
+ * a new major version of this package. Providers should import this package with a range
+ * limited to its current major version.
  */
 public interface ConfigurationProperties
 {
@@ -56,4 +64,79 @@ public interface ConfigurationProperties
     * @return The type-interpreted value of the property or the provided {@code defaultValue}, both of which may be {@code null}
     */
    <T> T getPropertyValue(String name, Class<T> type, T defaultValue) throws IllegalStateException;
+
+   /**
+    * Evaluate a configuration property as the given type and return it, computing a default
+    * value only if the property is undefined or cannot be converted. Otherwise behaves as
+    * {@link #getPropertyValue(String, Class, Object)}.
+    * <p>
+    * The computed default is retained until the configuration changes and returned again by
+    * later calls for the same property, type and supplier without calling the supplier. To
+    * benefit, callers should hold the supplier, for example in a field, rather than create a
+    * new one for each call.
+    *
+    * @param <T> The value type of the property
+    * @param name The name of the property to retrieve
+    * @param type The type of value to return.
+    * @param defaultSupplier Computes the value to return if the property can not be resolved.
+    * @return The type-interpreted value of the property or the computed default value, both of which may be {@code null}
+    * @since 2.0
+    */
+   <T> T getPropertyValueOrElseGet(String name, Class<T> type, DefaultSupplier<? extends T> defaultSupplier);
+
+   /**
+    * Evaluate several configuration properties at once. All properties are read from a single
+    * snapshot of the configuration, so the values are consistent with each other, and the
+    * per-property cost of lookup is paid in one pass rather than once per call.
+    * <p>
+    * Each property is evaluated as {@link #getPropertyValue(String, Class, Object)} would with
+    * a {@code null} default value; a property that cannot be converted does not prevent the
+    * others from being read.
+    *
+    * @param request The type to evaluate each property as, by property name.
+    * @return The values of the requested properties. Will not be {@code null}
+    * @since 2.0
+    */
+   PropertyValues getPropertyValues(Map<String, Class<?>> request);
+
+   /**
+    * Obtain a reusable handle to a configuration property. The handle evaluates the property
+    * as {@link #getPropertyValue(String, Class, Object)} would, but retains the result until
+    * the configuration changes, so that repeated reads require no lookup, conversion or
+    * allocation. Handles are thread-safe and intended to be created once and held, for
+    * example in a field.
+    *
+    * @param <T> The value type of the property
+    * @param name The name of the property to retrieve
+    * @param type The type of value to return.
+    * @param defaultValue The value to return if the property can not be resolved. This value may be {@code null}.
+    * @return A handle to the property. Will not be {@code null}
+    * @since 2.0
+    */
+   <T> PropertyHandle<T> handle(String name, Class<T> type, T defaultValue);
+
+   /**
+    * Obtain the raw values of all properties whose names begin with the given prefix, such as
+    * {@code "db.primary."}. Names in the returned map include the prefix.
+    * <p>
+    * The returned map is a read-only view of the configuration at the time of the call; it
+    * does not reflect later changes. Implementations should create the view without copying
+    * the configuration, so that obtaining and iterating a small namespace of a large
+    * configuration is inexpensive.
+    *
+    * @param prefix The prefix of the property names to return. The empty string selects all properties.
+    * @return A read-only, sorted view of the matching properties. Will not be {@code null}
+    * @since 2.0
+    */
+   SortedMap<String, String> subset(String prefix);
+
+   /**
+    * Obtain an immutable view of the current configuration. Reads through the returned
+    * snapshot are consistent with each other, even if the configuration changes while they
+    * are made. Taking a snapshot is inexpensive and does not copy the configuration.
+    *
+    * @return The current snapshot. Will not be {@code null}
+    * @since 2.0
+    */
+   ConfigurationSnapshot snapshot();
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * An immutable view of the values of a {@link ConfigurationProperties} service at a single
+ * point in time.
+ * <p>
+ * All reads through a snapshot observe the same values, regardless of changes made to the
+ * configuration after the snapshot was taken. Use a snapshot when several related properties,
+ * such as the URL, user and pool size of a database, must be read consistently.
+ * <p>
+ * Each snapshot carries a version number. Versions increase each time the values of a service
+ * change, so that derived state may be cached along with the version it was computed from and
+ * recomputed only once a newer snapshot is available.
+ * <p>
+ * Instances are obtained from {@link ConfigurationProperties#snapshot()} and are thread-safe.
+ *
+ * @since 2.0
+ */
+public interface ConfigurationSnapshot
+{
+   /**
+    * @return The version of this snapshot. A snapshot taken later from the same service has
+    *       an equal version if the configuration has not changed since, and a greater version
+    *       otherwise.
+    */
+   long getVersion();
+
+   /**
+    * Evaluate a property of this snapshot as the given type.
+    *
+    * @see ConfigurationProperties#getPropertyValue(String, Class)
+    */
+   <T> T getPropertyValue(String name, Class<T> type) throws IllegalStateException;
+
+   /**
+    * Evaluate a property of this snapshot as the given type, returning the default value if
+    * the property is undefined or cannot be converted.
+    *
+    * @see ConfigurationProperties#getPropertyValue(String, Class, Object)
+    */
+   <T> T getPropertyValue(String name, Class<T> type, T defaultValue);
+
+   /**
+    * Evaluate a property of this snapshot as the given type, computing a default value only if
+    * the property is undefined or cannot be converted.
+    *
+    * @see ConfigurationProperties#getPropertyValueOrElseGet(String, Class, DefaultSupplier)
+    */
+   <T> T getPropertyValueOrElseGet(String name, Class<T> type, DefaultSupplier<? extends T> defaultSupplier);
+
+   /**
+    * Evaluate several properties of this snapshot at once.
+    *
+    * @see ConfigurationProperties#getPropertyValues(Map)
+    */
+   PropertyValues getPropertyValues(Map<String, Class<?>> request);
+
+   /**
+    * Obtain the raw values of all properties of this snapshot whose names begin with the given
+    * prefix.
+    *
+    * @see ConfigurationProperties#subset(String)
+    */
+   SortedMap<String, String> subset(String prefix);
+}
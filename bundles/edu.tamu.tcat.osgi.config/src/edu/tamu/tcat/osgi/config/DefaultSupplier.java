@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+/**
+ * Computes the default value of a configuration property on demand, for defaults that are
+ * expensive to build. See {@link ConfigurationProperties#getPropertyValueOrElseGet(String, Class, DefaultSupplier)}.
+ * <p>
+ * This interface has a single method, so that it may be implemented with a lambda expression
+ * or method reference where the language level permits.
+ *
+ * @param <T> The type of the default value.
+ * @since 2.0
+ */
+public interface DefaultSupplier<T>
+{
+   /**
+    * @return The default value. May be {@code null}.
+    */
+   T get();
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+/**
+ * Interprets the string value of a configuration property as a specific type.
+ * <p>
+ * Implementations may be registered as OSGi services to extend the set of types that
+ * {@link ConfigurationProperties} implementations are able to return. Converters are matched
+ * to requests by exact type, so a converter for {@code java.util.Date} will not be used
+ * to satisfy a request for {@code java.sql.Date}.
+ * <p>
+ * Implementations must be thread-safe and should be free of side effects; converted values
+ * may be cached and shared between callers.
+ *
+ * @param <T> The type of value produced by this converter.
+ * @since 2.0
+ */
+public interface PropertyConverter<T>
+{
+   /**
+    * @return The type of value produced by this converter. Must not be {@code null}.
+    */
+   Class<T> getType();
+
+   /**
+    * Interpret the supplied string value.
+    *
+    * @param value The raw property value. Will not be {@code null}.
+    * @return The converted value.
+    * @throws Exception If the value cannot be interpreted as the type of this converter.
+    */
+   T convert(String value) throws Exception;
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+/**
+ * A reusable reference to a single configuration property, evaluated as a particular type.
+ * <p>
+ * A handle resolves its value once for each version of the configuration and returns the
+ * retained result until the configuration changes. The primitive accessors return values
+ * retained in unboxed form, so that reading a handle in a tight loop does not allocate.
+ * <p>
+ * Instances are obtained from {@link ConfigurationProperties#handle(String, Class, Object)}
+ * and are thread-safe.
+ *
+ * @param <T> The value type of the property
+ * @since 2.0
+ */
+public interface PropertyHandle<T>
+{
+   /**
+    * @return The name of the property.
+    */
+   String getName();
+
+   /**
+    * @return The type the property is evaluated as.
+    */
+   Class<T> getType();
+
+   /**
+    * @return The current value of the property, or the default value if the property is
+    *       undefined or cannot be converted. May be {@code null}.
+    */
+   T get();
+
+   /**
+    * @return The current value of a numeric property as an {@code int}.
+    * @throws IllegalStateException If the property is not numeric or has no value, or if the
+    *       value is fractional or outside the range of {@code int}.
+    */
+   int getInt() throws IllegalStateException;
+
+   /**
+    * @return The current value of a numeric property as a {@code long}.
+    * @throws IllegalStateException If the property is not numeric or has no value, or if the
+    *       value is fractional or outside the range of {@code long}.
+    */
+   long getLong() throws IllegalStateException;
+
+   /**
+    * @return The current value of a numeric property as a {@code double}.
+    * @throws IllegalStateException If the property is not numeric or has no value.
+    */
+   double getDouble() throws IllegalStateException;
+
+   /**
+    * @return The current value of a {@link Boolean} property.
+    * @throws IllegalStateException If the property is not a {@code Boolean} or has no value.
+    */
+   boolean getBoolean() throws IllegalStateException;
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config;
+
+/**
+ * The values of several configuration properties, read together from a single
+ * {@link ConfigurationSnapshot}.
+ * <p>
+ * Values are converted once, when the result is created, and are consistent with each other.
+ * Each value is obtained as the type it was requested as; a property that is undefined or
+ * cannot be converted has a {@code null} value.
+ * <p>
+ * Instances are obtained from {@link ConfigurationProperties#getPropertyValues(java.util.Map)}
+ * and are immutable and thread-safe.
+ *
+ * @since 2.0
+ */
+public interface PropertyValues
+{
+   /**
+    * @return The version of the snapshot the values were read from.
+    * @see ConfigurationSnapshot#getVersion()
+    */
+   long getVersion();
+
+   /**
+    * @return The number of properties requested.
+    */
+   int size();
+
+   /**
+    * @param name The name of a requested property.
+    * @param type The type the property was requested as.
+    * @return The value of the property, or {@code null} if it is undefined or cannot be converted.
+    * @throws IllegalArgumentException If the property was not requested, or was requested as
+    *       a different type.
+    */
+   <T> T get(String name, Class<T> type) throws IllegalArgumentException;
+
+   /**
+    * @param name The name of a requested property.
+    * @param type The type the property was requested as.
+    * @param defaultValue The value to return if the property is undefined or cannot be converted.
+    * @return The value of the property or the provided default value.
+    * @throws IllegalArgumentException If the property was not requested, or was requested as
+    *       a different type.
+    */
+   <T> T get(String name, Class<T> type, T defaultValue) throws IllegalArgumentException;
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.cm;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.osgi.framework.Constants;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import edu.tamu.tcat.osgi.config.ConfigurationChangeEvent;
+import edu.tamu.tcat.osgi.config.ConfigurationChangeListener;
+import edu.tamu.tcat.osgi.config.ConfigurationProperties;
+
+/**
+ * Publishes ranges of {@link ConfigurationProperties} keys to OSGi Configuration Admin, so
+ * that components configured by Configuration Admin receive {@code modified} callbacks when
+ * the properties change rather than having to poll the {@link ConfigurationProperties} service.
+ * <p>
+ * This implementation is intended to be used as an OSGI Declarative Service that references a
+ * single {@link ConfigurationProperties} service and the {@link ConfigurationAdmin} service and
+ * that provides the {@link ConfigurationChangeListener} service so that it is notified of
+ * changes. Each PID to publish is defined by a DS property whose name is the PID prefixed by
+ * {@value #PROP_PID_PREFIX} and whose value is the key prefix of the properties to publish.
+ * The key prefix is removed from the keys of the published configuration.
+ * <p>
+ * For example, the DS property {@code props.cm.pid.org.example.db=app.db.} publishes the
+ * properties {@code app.db.url} and {@code app.db.user} as the configuration
+ * {@code org.example.db} with the keys {@code url} and {@code user}.
+ * <p>
+ * A configuration is updated only when the values for its PID actually differ from those last
+ * published, so components whose properties did not change are left alone.
+ *
+ * @since 2.0
+ */
+public class ConfigurationAdminBridge implements ConfigurationChangeListener
+{
+   private static final Logger debug = Logger.getLogger("edu.tamu.tcat.osgi.config.cm");
+
+   /**
+    * DS properties whose names start with this prefix define a PID to publish. The remainder
+    * of the DS property name is the PID and the value is the prefix of the keys to publish.
+    */
+   public static final String PROP_PID_PREFIX = "props.cm.pid.";
+
+   private ConfigurationProperties config;
+   private ConfigurationAdmin configAdmin;
+
+   /** The key prefix published under each PID. */
+   private volatile Map<String, String> prefixes = Collections.emptyMap();
+
+   /** The values most recently published under each PID. */
+   //@GuardedBy("this")
+   private final Map<String, Map<String, String>> published = new HashMap<String, Map<String, String>>();
+
+   // called by DS
+   public void setConfigurationProperties(ConfigurationProperties config)
+   {
+      this.config = config;
+   }
+
+   // called by DS
+   public void setConfigurationAdmin(ConfigurationAdmin configAdmin)
+   {
+      this.configAdmin = configAdmin;
+   }
+
+   // called by DS
+   public void activate(Map<String, Object> params)
+   {
+      Objects.requireNonNull(config, "ConfigurationProperties not available");
+      Objects.requireNonNull(configAdmin, "ConfigurationAdmin not available");
+
+      Map<String, String> pids = new HashMap<String, String>();
+      for (Map.Entry<String, Object> entry : params.entrySet())
+      {
+         String name = entry.getKey();
+         if (name.length() > PROP_PID_PREFIX.length() && name.startsWith(PROP_PID_PREFIX) && entry.getValue() != null)
+            pids.put(name.substring(PROP_PID_PREFIX.length()), String.valueOf(entry.getValue()));
+      }
+
+      if (pids.isEmpty())
+         debug.warning("No PIDs defined by '" + PROP_PID_PREFIX + "*' properties, nothing will be published");
+
+      synchronized (this)
+      {
+         prefixes = pids;
+         for (String pid : pids.keySet())
+            publish(pid);
+      }
+   }
+
+   // called by DS
+   public void dispose()
+   {
+      synchronized (this)
+      {
+         prefixes = Collections.emptyMap();
+         published.clear();
+      }
+   }
+
+   @Override
+   public void configurationChanged(ConfigurationChangeEvent event)
+   {
+      // as a whiteboard listener, this is notified of changes to every configuration service
+      if (event.getSource() != config)
+         return;
+
+      Map<String, String> current = prefixes;
+      Set<String> affected = new HashSet<String>();
+      for (String key : event.getChangedKeys())
+      {
+         for (Map.Entry<String, String> entry : current.entrySet())
+         {
+            if (key.startsWith(entry.getValue()))
+               affected.add(entry.getKey());
+         }
+      }
+
+      if (affected.isEmpty())
+         return;
+
+      synchronized (this)
+      {
+         for (String pid : affected)
+         {
+            // may have been disposed while waiting
+            if (prefixes.containsKey(pid))
+               publish(pid);
+         }
+      }
+   }
+
+   /**
+    * Update the configuration for a PID if its values differ from those published previously
+    * or, on first publication, from those held by Configuration Admin.
+    */
+   //@GuardedBy("this")
+   private void publish(String pid)
+   {
+      String prefix = prefixes.get(pid);
+      Map<String, String> values = new HashMap<String, String>();
+      for (Map.Entry<String, String> entry : config.subset(prefix).entrySet())
+      {
+         String key = entry.getKey().substring(prefix.length());
+         if (!key.isEmpty())
+            values.put(key, entry.getValue());
+      }
+
+      if (values.equals(published.get(pid)))
+         return;
+
+      try
+      {
+         Configuration configuration = configAdmin.getConfiguration(pid, null);
+         Dictionary<String, Object> existing = configuration.getProperties();
+         // avoid creating configurations for which there is nothing to publish
+         boolean unchanged = (existing == null) ? values.isEmpty() : values.equals(toMap(existing));
+         if (!unchanged)
+         {
+            configuration.update(new Hashtable<String, Object>(values));
+            debug.fine("Updated configuration [" + pid + "] with (" + values.size() + ") properties");
+         }
+         published.put(pid, values);
+      }
+      catch (IOException e)
+      {
+         debug.log(Level.WARNING, "Failed updating configuration [" + pid + "]", e);
+      }
+   }
+
+   /**
+    * @return The properties of a configuration, excluding those set by Configuration Admin.
+    */
+   private static Map<String, Object> toMap(Dictionary<String, Object> properties)
+   {
+      Map<String, Object> map = new HashMap<String, Object>();
+      for (Enumeration<String> keys = properties.keys(); keys.hasMoreElements();)
+      {
+         String key = keys.nextElement();
+         if (!Constants.SERVICE_PID.equals(key)
+               && !ConfigurationAdmin.SERVICE_FACTORYPID.equals(key)
+               && !ConfigurationAdmin.SERVICE_BUNDLELOCATION.equals(key))
+            map.put(key, properties.get(key));
+      }
+      return map;
+   }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A {@link SortedIndex} held as a pair of parallel arrays, built by sorting the keys of a map.
+ */
+final class ArraySortedIndex implements SortedIndex
+{
+   private final String[] keys;
+   private final String[] values;
+
+   private ArraySortedIndex(String[] keys, String[] values)
+   {
+      this.keys = keys;
+      this.values = values;
+   }
+
+   static ArraySortedIndex of(Map<String, String> map)
+   {
+      String[] keys = map.keySet().toArray(new String[map.size()]);
+      Arrays.sort(keys);
+
+      String[] values = new String[keys.length];
+      for (int i = 0; i < keys.length; i++)
+         values[i] = map.get(keys[i]);
+
+      return new ArraySortedIndex(keys, values);
+   }
+
+   @Override
+   public int size()
+   {
+      return keys.length;
+   }
+
+   @Override
+   public String keyAt(int ix)
+   {
+      return keys[ix];
+   }
+
+   @Override
+   public String valueAt(int ix)
+   {
+      return values[ix];
+   }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replaces the content of a file such that readers, and the file itself after a crash, observe
+ * either the complete old content or the complete new content but never a partial write.
+ * <p>
+ * Content is first written to a temporary file in the same directory as the target, optionally
+ * forced to the storage device, and then renamed over the target.
+ */
+final class AtomicFileWriter
+{
+   private static final Logger debug = Logger.getLogger("edu.tamu.tcat.osgi.config.file.simple");
+
+   private AtomicFileWriter()
+   {
+   }
+
+   /**
+    * Atomically replace the content of a file.
+    *
+    * @param target The file to write. If this is a symbolic link, the file it refers to is replaced.
+    * @param content The new content of the file.
+    * @param fsync {@code true} to force the content and the rename to the storage device before
+    *       returning.
+    * @throws IOException If the file could not be written. The target is unchanged in this case.
+    */
+   static void write(Path target, byte[] content, boolean fsync) throws IOException
+   {
+      Path file = Files.exists(target) ? target.toRealPath() : target.toAbsolutePath();
+      Path dir = file.getParent();
+      Path tmp = Files.createTempFile(dir, "." + file.getFileName(), ".tmp");
+      try
+      {
+         copyPermissions(file, tmp);
+         try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+         {
+            ByteBuffer buf = ByteBuffer.wrap(content);
+            while (buf.hasRemaining())
+               channel.write(buf);
+
+            if (fsync)
+               channel.force(true);
+         }
+
+         move(tmp, file);
+         tmp = null;
+
+         if (fsync)
+            syncDirectory(dir);
+      }
+      finally
+      {
+         if (tmp != null)
+            Files.deleteIfExists(tmp);
+      }
+   }
+
+   private static void move(Path source, Path target) throws IOException
+   {
+      try
+      {
+         Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+         debug.log(Level.WARNING, "Atomic rename is not supported for [" + target + "], replacing non-atomically", e);
+         Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+   /**
+    * Temporary files are created readable only by their owner; give the replacement file the
+    * same permissions as the file it replaces.
+    */
+   private static void copyPermissions(Path from, Path to)
+   {
+      if (!Files.exists(from))
+         return;
+
+      try
+      {
+         Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+      }
+      catch (UnsupportedOperationException | IOException e)
+      {
+         debug.log(Level.FINE, "Unable to copy file permissions from [" + from + "]", e);
+      }
+   }
+
+   /**
+    * Force the directory entry created by the rename to the storage device. Not all platforms
+    * allow a directory to be opened, so failures are ignored.
+    */
+   private static void syncDirectory(Path dir)
+   {
+      try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ))
+      {
+         channel.force(true);
+      }
+      catch (IOException e)
+      {
+         debug.log(Level.FINE, "Unable to sync directory [" + dir + "]", e);
+      }
+   }
+}
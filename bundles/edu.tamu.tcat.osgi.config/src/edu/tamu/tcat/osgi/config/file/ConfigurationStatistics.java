@@ -0,0 +1,323 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Collects the statistics of a {@link SimpleFileConfigurationProperties} instance and exposes
+ * them, together with its maintenance operations, as a platform MXBean.
+ * <p>
+ * Recording a statistic never blocks. Reads are counted only while read counting is enabled.
+ * Counts updated on the read path are striped across several cells so that concurrent
+ * readers rarely contend.
+ */
+final class ConfigurationStatistics implements SimpleFileConfigurationPropertiesMXBean
+{
+   private static final Logger debug = Logger.getLogger("edu.tamu.tcat.osgi.config.file.simple");
+
+   private static final String DOMAIN = "edu.tamu.tcat.osgi.config";
+
+   /** Cells are spaced a cache line apart to avoid false sharing. */
+   private static final int PAD = 8;
+   private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) << 1;
+   /** The minimum interval over which the read rate is measured. */
+   private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+   private final SimpleFileConfigurationProperties props;
+
+   private volatile long lastLoadNanos;
+   private final AtomicLong loadCount = new AtomicLong();
+   private final AtomicLong conversionFailures = new AtomicLong();
+   private final AtomicLongArray suppressedFailures = new AtomicLongArray(STRIPES * PAD);
+   private final AtomicLong writeCount = new AtomicLong();
+   private final AtomicLong writeNanos = new AtomicLong();
+   private volatile long lastWriteNanos;
+
+   private volatile boolean countReads;
+   private final AtomicLongArray reads = new AtomicLongArray(STRIPES * PAD);
+   /** The start of the interval over which the read rate is measured. */
+   //@GuardedBy("this")
+   private long rateSampleCount;
+   //@GuardedBy("this")
+   private long rateSampleNanos;
+   /** The start of the next interval, taken once the current one spans a full window. */
+   //@GuardedBy("this")
+   private long nextRateSampleCount;
+   //@GuardedBy("this")
+   private long nextRateSampleNanos;
+
+   //@GuardedBy("this")
+   private ObjectName registeredName;
+
+   ConfigurationStatistics(SimpleFileConfigurationProperties props)
+   {
+      this.props = props;
+   }
+
+   /**
+    * Register with the platform MBean server. Failures are logged; statistics are still
+    * collected.
+    *
+    * @param name Identifies the instance, typically the name of the property that specifies
+    *       the properties file.
+    */
+   synchronized void register(String name)
+   {
+      if (registeredName != null)
+         return;
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try
+      {
+         StandardMBean mbean = new StandardMBean(this, SimpleFileConfigurationPropertiesMXBean.class, true);
+         String base = DOMAIN + ":type=SimpleFileConfigurationProperties,name=" + ObjectName.quote(name);
+         ObjectName objectName = new ObjectName(base);
+         // several instances may load the same file
+         for (int instance = 2; registeredName == null; instance++)
+         {
+            try
+            {
+               server.registerMBean(mbean, objectName);
+               registeredName = objectName;
+            }
+            catch (InstanceAlreadyExistsException e)
+            {
+               objectName = new ObjectName(base + ",instance=" + instance);
+            }
+         }
+         debug.fine("Registered MBean " + registeredName);
+      }
+      catch (JMException e)
+      {
+         debug.log(Level.WARNING, "Failed registering configuration MBean for '" + name + "'", e);
+      }
+   }
+
+   synchronized void unregister()
+   {
+      if (registeredName == null)
+         return;
+
+      try
+      {
+         ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+      }
+      catch (JMException e)
+      {
+         debug.log(Level.WARNING, "Failed unregistering MBean " + registeredName, e);
+      }
+      registeredName = null;
+   }
+
+   void loaded(long nanos)
+   {
+      lastLoadNanos = nanos;
+      loadCount.incrementAndGet();
+   }
+
+   void written(long nanos)
+   {
+      lastWriteNanos = nanos;
+      writeNanos.addAndGet(nanos);
+      writeCount.incrementAndGet();
+   }
+
+   void conversionFailed()
+   {
+      conversionFailures.incrementAndGet();
+   }
+
+   /**
+    * Counted on the read path of every failed property, so striped like reads.
+    */
+   void conversionFailureSuppressed()
+   {
+      increment(suppressedFailures);
+   }
+
+   void read()
+   {
+      if (!countReads)
+         return;
+
+      increment(reads);
+   }
+
+   private static void increment(AtomicLongArray cells)
+   {
+      int cell = (int)(Thread.currentThread().getId() & (STRIPES - 1)) * PAD;
+      cells.incrementAndGet(cell);
+   }
+
+   private static long sum(AtomicLongArray cells)
+   {
+      long total = 0;
+      for (int i = 0; i < STRIPES; i++)
+         total += cells.get(i * PAD);
+      return total;
+   }
+
+   @Override
+   public int getKeyCount()
+   {
+      return props.getSnapshot().size();
+   }
+
+   @Override
+   public long getEstimatedHeapBytes()
+   {
+      return props.getSnapshot().estimateHeapBytes();
+   }
+
+   @Override
+   public double getLastLoadMillis()
+   {
+      return lastLoadNanos / 1e6;
+   }
+
+   @Override
+   public long getReloadCount()
+   {
+      return Math.max(0, loadCount.get() - 1);
+   }
+
+   @Override
+   public boolean isReadCountingEnabled()
+   {
+      return countReads;
+   }
+
+   @Override
+   public void setReadCountingEnabled(boolean enabled)
+   {
+      synchronized (this)
+      {
+         if (enabled && !countReads)
+         {
+            rateSampleCount = nextRateSampleCount = getReadCount();
+            rateSampleNanos = nextRateSampleNanos = System.nanoTime();
+         }
+         countReads = enabled;
+      }
+   }
+
+   @Override
+   public long getReadCount()
+   {
+      return sum(reads);
+   }
+
+   @Override
+   public double getReadRate()
+   {
+      synchronized (this)
+      {
+         if (!countReads)
+            return 0;
+
+         // the interval advances by whole windows rather than on every call, so that the rate
+         // does not depend on how often, or by how many clients, it is read
+         long count = getReadCount();
+         long now = System.nanoTime();
+         if (now - nextRateSampleNanos >= RATE_WINDOW_NANOS)
+         {
+            rateSampleCount = nextRateSampleCount;
+            rateSampleNanos = nextRateSampleNanos;
+            nextRateSampleCount = count;
+            nextRateSampleNanos = now;
+         }
+
+         long elapsed = now - rateSampleNanos;
+         return (elapsed <= 0) ? 0 : (count - rateSampleCount) * 1e9 / elapsed;
+      }
+   }
+
+   @Override
+   public long getConversionFailureCount()
+   {
+      return conversionFailures.get();
+   }
+
+   @Override
+   public long getSuppressedConversionFailureCount()
+   {
+      return sum(suppressedFailures);
+   }
+
+   @Override
+   public long getWriteCount()
+   {
+      return writeCount.get();
+   }
+
+   @Override
+   public double getLastWriteMillis()
+   {
+      return lastWriteNanos / 1e6;
+   }
+
+   @Override
+   public double getAverageWriteMillis()
+   {
+      long count = writeCount.get();
+      return (count == 0) ? 0 : writeNanos.get() / 1e6 / count;
+   }
+
+   @Override
+   public void reload()
+   {
+      props.reloadProperties();
+   }
+
+   @Override
+   public void flush()
+   {
+      try
+      {
+         props.flush().get();
+      }
+      catch (ExecutionException e)
+      {
+         // remote clients may not have the cause's class; report its description only
+         throw new IllegalStateException("Failed writing properties file: " + e.getCause());
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while writing properties file");
+      }
+   }
+
+   @Override
+   public String[] dumpKeys()
+   {
+      return props.getSnapshot().subset("").keySet().toArray(new String[0]);
+   }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+
+/**
+ * A call site whose target returns the value of a property as a constant.
+ * <p>
+ * The target is a constant method handle guarded by the {@link SwitchPoint} of the service
+ * at the time the value was resolved. While the configuration is unchanged, the guard costs
+ * nothing and the JIT may fold the value into compiled code. Publishing new values
+ * invalidates the switch point, which deoptimizes dependent code; the next call then falls
+ * back to {@link #relink()}, which resolves the value against the current snapshot and installs
+ * a new guarded constant.
+ */
+final class ConstantPropertySite extends MutableCallSite
+{
+   private static final MethodHandle RELINK;
+   static
+   {
+      try
+      {
+         RELINK = MethodHandles.lookup().findVirtual(ConstantPropertySite.class, "relink", MethodType.methodType(Object.class));
+      }
+      catch (NoSuchMethodException | IllegalAccessException e)
+      {
+         throw new IllegalStateException("Failed to bind relink method", e);
+      }
+   }
+
+   private final SimpleFileConfigurationProperties props;
+   private final String name;
+   private final Class<?> valueType;
+   private final Object defaultValue;
+   private final MethodHandle fallback;
+
+   /**
+    * @param type The type returned by the target. May be primitive.
+    * @param defaultValue The value to use if the property is undefined or cannot be converted.
+    *       Must not be {@code null} if the type is primitive.
+    */
+   ConstantPropertySite(SimpleFileConfigurationProperties props, String name, Class<?> type, Object defaultValue)
+   {
+      super(MethodType.methodType(type));
+      this.props = props;
+      this.name = name;
+      this.valueType = type().wrap().returnType();
+      this.defaultValue = defaultValue;
+      this.fallback = RELINK.bindTo(this).asType(type());
+      relink();
+   }
+
+   /**
+    * Resolve the current value and install it as the target of this call site.
+    *
+    * @return The current value.
+    */
+   // called through the fallback target once the switch point has been invalidated
+   private Object relink()
+   {
+      // the switch point must be obtained before the snapshot, so that a change published in
+      // between invalidates the new target rather than leaving a stale value in place
+      SwitchPoint switchPoint = props.getSwitchPoint();
+      Object value = resolve(valueType);
+      setTarget(switchPoint.guardWithTest(MethodHandles.constant(type().returnType(), value), fallback));
+      return value;
+   }
+
+   private <T> T resolve(Class<T> type)
+   {
+      return props.getPropertyValue(props.getSnapshot(), name, type, type.cast(defaultValue));
+   }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import edu.tamu.tcat.osgi.config.PropertyConverter;
+
+/**
+ * Maintains the {@link PropertyConverter}s available to a configuration properties service.
+ * <p>
+ * Converters are registered by the exact type they produce. Built-in converters are provided for
+ * the boxed primitive types, {@link Path}, {@link URI}, {@link InetSocketAddress} and
+ * {@link Pattern}; enum types are supported without registration. Socket addresses are expected
+ * in {@code host:port} form and are returned unresolved so that reading a property never
+ * blocks on name resolution. Contributed converters take
+ * precedence over built-in converters for the same type.
+ * <p>
+ * The converter used for each requested type is resolved once and cached, so that converting
+ * a value is a single hash lookup followed by the conversion itself. The cache is cleared
+ * whenever a converter is added or removed.
+ */
+final class ConverterRegistry
+{
+   private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<Class<?>, Class<?>>();
+   static
+   {
+      WRAPPERS.put(byte.class, Byte.class);
+      WRAPPERS.put(short.class, Short.class);
+      WRAPPERS.put(int.class, Integer.class);
+      WRAPPERS.put(long.class, Long.class);
+      WRAPPERS.put(float.class, Float.class);
+      WRAPPERS.put(double.class, Double.class);
+      WRAPPERS.put(boolean.class, Boolean.class);
+   }
+
+   private final Map<Class<?>, PropertyConverter<?>> builtIn = new HashMap<Class<?>, PropertyConverter<?>>();
+   private final ConcurrentMap<Class<?>, PropertyConverter<?>> contributed = new ConcurrentHashMap<Class<?>, PropertyConverter<?>>();
+   /**
+    * Converters resolved for requested types. Replaced rather than cleared when registrations
+    * change so that a concurrent resolution cannot store a stale entry in the new cache.
+    */
+   private volatile ConcurrentMap<Class<?>, PropertyConverter<?>> resolved = new ConcurrentHashMap<Class<?>, PropertyConverter<?>>();
+
+   ConverterRegistry()
+   {
+      registerBuiltIn(new PropertyConverter<Byte>() {
+         @Override public Class<Byte> getType() { return Byte.class; }
+         @Override public Byte convert(String value) { return Byte.valueOf(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Short>() {
+         @Override public Class<Short> getType() { return Short.class; }
+         @Override public Short convert(String value) { return Short.valueOf(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Integer>() {
+         @Override public Class<Integer> getType() { return Integer.class; }
+         @Override public Integer convert(String value) { return Integer.valueOf(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Long>() {
+         @Override public Class<Long> getType() { return Long.class; }
+         @Override public Long convert(String value) { return Long.valueOf(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Float>() {
+         @Override public Class<Float> getType() { return Float.class; }
+         @Override public Float convert(String value) { return Float.valueOf(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Double>() {
+         @Override public Class<Double> getType() { return Double.class; }
+         @Override public Double convert(String value) { return Double.valueOf(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Boolean>() {
+         @Override public Class<Boolean> getType() { return Boolean.class; }
+         @Override public Boolean convert(String value) { return Boolean.valueOf(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Path>() {
+         @Override public Class<Path> getType() { return Path.class; }
+         @Override public Path convert(String value) { return Paths.get(value); }
+      });
+      registerBuiltIn(new PropertyConverter<URI>() {
+         @Override public Class<URI> getType() { return URI.class; }
+         @Override public URI convert(String value) throws Exception { return new URI(value); }
+      });
+      registerBuiltIn(new PropertyConverter<InetSocketAddress>() {
+         @Override public Class<InetSocketAddress> getType() { return InetSocketAddress.class; }
+         @Override public InetSocketAddress convert(String value) { return parseSocketAddress(value); }
+      });
+      registerBuiltIn(new PropertyConverter<Pattern>() {
+         @Override public Class<Pattern> getType() { return Pattern.class; }
+         @Override public Pattern convert(String value) { return Pattern.compile(value); }
+      });
+   }
+
+   private void registerBuiltIn(PropertyConverter<?> converter)
+   {
+      builtIn.put(converter.getType(), converter);
+   }
+
+   /**
+    * Register a contributed converter, replacing any built-in converter for the same type.
+    */
+   void add(PropertyConverter<?> converter)
+   {
+      Objects.requireNonNull(converter, "converter is null");
+      Class<?> type = Objects.requireNonNull(converter.getType(), "converter type is null");
+      contributed.put(type, converter);
+      resolved = new ConcurrentHashMap<Class<?>, PropertyConverter<?>>();
+   }
+
+   /**
+    * Remove a previously contributed converter. Has no effect if the supplied converter is
+    * not the one currently registered for its type.
+    */
+   void remove(PropertyConverter<?> converter)
+   {
+      if (converter == null || converter.getType() == null)
+         return;
+
+      contributed.remove(converter.getType(), converter);
+      resolved = new ConcurrentHashMap<Class<?>, PropertyConverter<?>>();
+   }
+
+   /**
+    * Convert the value of the named property to the requested type.
+    *
+    * @throws IllegalStateException If no converter is available for the type or the value
+    *       could not be converted.
+    */
+   <T> T convert(String name, String value, Class<T> type)
+   {
+      PropertyConverter<T> converter = resolve(type);
+      if (converter == null)
+         throw new IllegalStateException("Unhandled type: " + type.getCanonicalName());
+
+      try
+      {
+         return converter.convert(value);
+      }
+      catch (Exception e)
+      {
+         throw new IllegalStateException("Failed converting property ["+name+"] value ["+value+"] to "+type, e);
+      }
+   }
+
+   /**
+    * @return The converter to use for the requested type, or {@code null} if none is available.
+    */
+   @SuppressWarnings("unchecked")
+   <T> PropertyConverter<T> resolve(Class<T> type)
+   {
+      ConcurrentMap<Class<?>, PropertyConverter<?>> cache = resolved;
+      PropertyConverter<?> converter = cache.get(type);
+      if (converter == null)
+      {
+         converter = lookup(type);
+         if (converter == null)
+            return null;
+
+         cache.putIfAbsent(type, converter);
+      }
+
+      return (PropertyConverter<T>)converter;
+   }
+
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   private PropertyConverter<?> lookup(Class<?> type)
+   {
+      Class<?> key = WRAPPERS.containsKey(type) ? WRAPPERS.get(type) : type;
+
+      PropertyConverter<?> converter = contributed.get(key);
+      if (converter != null)
+         return converter;
+
+      converter = builtIn.get(key);
+      if (converter != null)
+         return converter;
+
+      if (key.isEnum())
+         return new EnumConverter(key);
+
+      return null;
+   }
+
+   static InetSocketAddress parseSocketAddress(String value)
+   {
+      String str = value.trim();
+      int ix = str.lastIndexOf(':');
+      if (ix < 0 || str.endsWith("]"))
+         throw new IllegalArgumentException("Expected 'host:port' but found [" + value + "]");
+
+      String host = str.substring(0, ix);
+      if (host.startsWith("[") && host.endsWith("]"))
+         host = host.substring(1, host.length() - 1);
+
+      int port = Integer.parseInt(str.substring(ix + 1));
+      return InetSocketAddress.createUnresolved(host, port);
+   }
+
+   /**
+    * Matches the property value against the names of the constants of an enum type, first
+    * exactly and then ignoring case.
+    */
+   private static final class EnumConverter<E extends Enum<E>> implements PropertyConverter<E>
+   {
+      private final Class<E> type;
+
+      EnumConverter(Class<E> type)
+      {
+         this.type = type;
+      }
+
+      @Override
+      public Class<E> getType()
+      {
+         return type;
+      }
+
+      @Override
+      public E convert(String value)
+      {
+         String str = value.trim();
+         for (E constant : type.getEnumConstants())
+         {
+            if (constant.name().equals(str))
+               return constant;
+         }
+
+         for (E constant : type.getEnumConstants())
+         {
+            if (constant.name().equalsIgnoreCase(str))
+               return constant;
+         }
+
+         throw new IllegalArgumentException("No constant of " + type.getCanonicalName() + " named [" + value + "]");
+      }
+   }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * Identifies the state of a file on disk by its size, modification time and a checksum of its
+ * content. Used to decide whether a file actually needs to be re-read after the file system
+ * reports that it was touched.
+ */
+final class FileStamp
+{
+   private final long size;
+   private final long lastModified;
+   private final long checksum;
+
+   FileStamp(long size, long lastModified, long checksum)
+   {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.checksum = checksum;
+   }
+
+   /**
+    * Read the current state of the given file.
+    *
+    * @throws IOException If the file cannot be read.
+    */
+   static FileStamp read(Path file) throws IOException
+   {
+      long lastModified = Files.getLastModifiedTime(file).toMillis();
+      CRC32 crc = new CRC32();
+      long size = 0;
+      byte[] buf = new byte[8192];
+      try (InputStream in = Files.newInputStream(file))
+      {
+         int read;
+         while ((read = in.read(buf)) >= 0)
+         {
+            crc.update(buf, 0, read);
+            size += read;
+         }
+      }
+
+      return new FileStamp(size, lastModified, crc.getValue());
+   }
+
+   /**
+    * Compute the stamp of a file whose content has already been read or has just been written,
+    * without reading the content again.
+    *
+    * @param lastModified The modification time of the file. When the content was read, this
+    *       should be obtained before reading, so that a change made while reading results in
+    *       a stamp that is already out of date.
+    * @param content The content of the file.
+    */
+   static FileStamp of(long lastModified, byte[] content)
+   {
+      CRC32 crc = new CRC32();
+      crc.update(content, 0, content.length);
+      return new FileStamp(content.length, lastModified, crc.getValue());
+   }
+
+   long getSize()
+   {
+      return size;
+   }
+
+   long getLastModified()
+   {
+      return lastModified;
+   }
+
+   long getChecksum()
+   {
+      return checksum;
+   }
+
+   /**
+    * @return {@code true} if the other stamp describes the same file content. The modification
+    *       time is not considered, since editors and tools commonly rewrite unchanged content.
+    */
+   boolean hasSameContent(FileStamp other)
+   {
+      return other != null && size == other.size && checksum == other.checksum;
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (!(obj instanceof FileStamp))
+         return false;
+
+      FileStamp other = (FileStamp)obj;
+      return size == other.size && lastModified == other.lastModified && checksum == other.checksum;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return (int)(checksum ^ (checksum >>> 32)) * 31 + (int)(size ^ (size >>> 32));
+   }
+
+   @Override
+   public String toString()
+   {
+      return "FileStamp [size=" + size + ", lastModified=" + lastModified + ", checksum=" + Long.toHexString(checksum) + "]";
+   }
+}
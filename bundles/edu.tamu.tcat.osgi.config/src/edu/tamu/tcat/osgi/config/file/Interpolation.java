@@ -0,0 +1,372 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The result of expanding placeholders in a set of property values, together with the
+ * dependency graph between the values so that a later change can be applied incrementally.
+ * <p>
+ * A placeholder of the form <code>${key}</code> is replaced by the resolved value of the named
+ * property and one of the form <code>${env:NAME}</code> by the value of the named environment
+ * variable. Properties are resolved in topological order of their references, so a value may
+ * refer to properties that themselves contain placeholders. Placeholders that refer to
+ * undefined properties or environment variables are left as is. Properties that are part of
+ * a reference cycle are not expanded; the cycle is logged and placeholders referring to them
+ * are left as is.
+ * <p>
+ * Instances are immutable.
+ */
+final class Interpolation
+{
+   private static final Logger debug = Logger.getLogger("edu.tamu.tcat.osgi.config.file.simple");
+
+   private static final String OPEN = "${";
+   private static final String CLOSE = "}";
+   private static final String ENV_PREFIX = "env:";
+
+   private final Map<String, String> resolved;
+   /** The property references of each value that contains placeholders, by property key. */
+   private final Map<String, Set<String>> references;
+   /** The keys of the values that refer to a property, by the key of the referenced property. */
+   private final Map<String, Set<String>> dependents;
+   /** Keys whose values could not be expanded because they are part of a reference cycle. */
+   private final Set<String> cyclic;
+
+   private Interpolation(Map<String, String> resolved,
+                         Map<String, Set<String>> references,
+                         Map<String, Set<String>> dependents,
+                         Set<String> cyclic)
+   {
+      this.resolved = resolved;
+      this.references = references;
+      this.dependents = dependents;
+      this.cyclic = cyclic;
+   }
+
+   /**
+    * Expand the placeholders of all values.
+    *
+    * @param raw The values to expand. If no value contains a placeholder, this map is used as
+    *       the resolved values without being copied; it must not be modified afterward.
+    */
+   static Interpolation resolve(Map<String, String> raw)
+   {
+      Map<String, Set<String>> references = new HashMap<String, Set<String>>();
+      Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+      for (Map.Entry<String, String> entry : raw.entrySet())
+         link(entry.getKey(), entry.getValue(), references, dependents);
+
+      if (references.isEmpty())
+         return new Interpolation(raw, references, dependents, Collections.<String>emptySet());
+
+      Map<String, String> resolved = new HashMap<String, String>(raw);
+      Set<String> cyclic = new HashSet<String>();
+      new Resolver(raw, resolved, references, cyclic, references.keySet()).run();
+      return new Interpolation(resolved, references, dependents, cyclic);
+   }
+
+   /**
+    * Apply a change to some of the values, expanding again only the changed values and those
+    * that depend on them, directly or indirectly.
+    *
+    * @param raw All values after the change.
+    * @param changed The keys that may have been added, removed or modified.
+    */
+   Interpolation update(Map<String, String> raw, Collection<String> changed)
+   {
+      Map<String, Set<String>> refs = new HashMap<String, Set<String>>(references);
+      Map<String, Set<String>> deps = new HashMap<String, Set<String>>(dependents);
+      for (String key : changed)
+      {
+         unlink(key, refs, deps);
+         link(key, raw.get(key), refs, deps);
+      }
+
+      // the changed keys and everything that depends on them, transitively
+      Set<String> affected = new HashSet<String>(changed);
+      Deque<String> queue = new ArrayDeque<String>(changed);
+      while (!queue.isEmpty())
+      {
+         Set<String> users = deps.get(queue.remove());
+         if (users == null)
+            continue;
+
+         for (String user : users)
+         {
+            if (affected.add(user))
+               queue.add(user);
+         }
+      }
+
+      Map<String, String> next = new HashMap<String, String>(resolved);
+      Set<String> pending = new HashSet<String>();
+      for (String key : affected)
+      {
+         String value = raw.get(key);
+         if (value == null)
+            next.remove(key);
+         else
+            next.put(key, value);
+
+         if (refs.containsKey(key))
+            pending.add(key);
+      }
+
+      Set<String> stillCyclic = new HashSet<String>(cyclic);
+      stillCyclic.removeAll(affected);
+      new Resolver(raw, next, refs, stillCyclic, pending).run();
+      return new Interpolation(next, refs, deps, stillCyclic);
+   }
+
+   /**
+    * @return The values with all resolvable placeholders expanded. Must not be modified.
+    */
+   Map<String, String> getResolved()
+   {
+      return resolved;
+   }
+
+   private static void link(String key, String value, Map<String, Set<String>> references, Map<String, Set<String>> dependents)
+   {
+      if (value == null || !value.contains(OPEN))
+         return;
+
+      // values that only refer to environment variables have no references but must be expanded
+      Set<String> refs = parseReferences(value);
+      references.put(key, refs);
+      for (String ref : refs)
+      {
+         // copy on write; the sets may be shared with the instance being updated
+         Set<String> users = dependents.get(ref);
+         users = (users == null) ? new HashSet<String>() : new HashSet<String>(users);
+         users.add(key);
+         dependents.put(ref, users);
+      }
+   }
+
+   private static void unlink(String key, Map<String, Set<String>> references, Map<String, Set<String>> dependents)
+   {
+      Set<String> refs = references.remove(key);
+      if (refs == null)
+         return;
+
+      for (String ref : refs)
+      {
+         Set<String> users = new HashSet<String>(dependents.get(ref));
+         users.remove(key);
+         if (users.isEmpty())
+            dependents.remove(ref);
+         else
+            dependents.put(ref, users);
+      }
+   }
+
+   /**
+    * @return The keys of the properties referenced by placeholders in the given value.
+    *       Environment variable references are not included.
+    */
+   private static Set<String> parseReferences(String value)
+   {
+      Set<String> refs = new LinkedHashSet<String>();
+      int start = value.indexOf(OPEN);
+      while (start >= 0)
+      {
+         int end = value.indexOf(CLOSE, start + OPEN.length());
+         if (end < 0)
+            break;
+
+         String name = value.substring(start + OPEN.length(), end);
+         if (!name.isEmpty() && !name.startsWith(ENV_PREFIX))
+            refs.add(name);
+         start = value.indexOf(OPEN, end + CLOSE.length());
+      }
+
+      return refs;
+   }
+
+   /**
+    * Resolves a set of pending keys in topological order of their references. The strongly
+    * connected components of the reference graph are found with Tarjan's algorithm, which
+    * yields each component after all components it refers to. A component with more than one
+    * key, or a key that refers to itself, is a reference cycle.
+    * <p>
+    * The depth-first search keeps its own stack of visits rather than recursing, since chains
+    * of references may be far longer than the call stack allows.
+    */
+   private static final class Resolver
+   {
+      private final Map<String, String> raw;
+      private final Map<String, String> out;
+      private final Map<String, Set<String>> references;
+      private final Set<String> cyclic;
+      private final Set<String> pending;
+
+      private final Map<String, Integer> index = new HashMap<String, Integer>();
+      private final Deque<String> stack = new ArrayDeque<String>();
+      private final Set<String> onStack = new HashSet<String>();
+
+      Resolver(Map<String, String> raw, Map<String, String> out, Map<String, Set<String>> references, Set<String> cyclic, Set<String> pending)
+      {
+         this.raw = raw;
+         this.out = out;
+         this.references = references;
+         this.cyclic = cyclic;
+         this.pending = pending;
+      }
+
+      void run()
+      {
+         for (String key : pending)
+         {
+            if (!index.containsKey(key))
+               search(key);
+         }
+      }
+
+      private void search(String root)
+      {
+         Deque<Visit> visits = new ArrayDeque<Visit>();
+         visits.push(enter(root));
+         while (!visits.isEmpty())
+         {
+            Visit visit = visits.peek();
+            Visit next = null;
+            while (next == null && visit.refs.hasNext())
+            {
+               String ref = visit.refs.next();
+
+               // values that are not pending are already resolved
+               if (!pending.contains(ref))
+                  continue;
+
+               if (!index.containsKey(ref))
+                  next = enter(ref);
+               else if (onStack.contains(ref))
+                  visit.lowLink = Math.min(visit.lowLink, index.get(ref).intValue());
+            }
+
+            if (next != null)
+            {
+               visits.push(next);
+               continue;
+            }
+
+            visits.pop();
+            if (!visits.isEmpty())
+               visits.peek().lowLink = Math.min(visits.peek().lowLink, visit.lowLink);
+            if (visit.lowLink == visit.index)
+               complete(visit.key);
+         }
+      }
+
+      private Visit enter(String key)
+      {
+         Visit visit = new Visit(key, index.size(), references.get(key).iterator());
+         index.put(key, Integer.valueOf(visit.index));
+         stack.push(key);
+         onStack.add(key);
+         return visit;
+      }
+
+      /**
+       * Resolve the strongly connected component whose root is the given key.
+       */
+      private void complete(String key)
+      {
+         List<String> component = new ArrayList<String>();
+         String member;
+         do
+         {
+            member = stack.pop();
+            onStack.remove(member);
+            component.add(member);
+         }
+         while (!member.equals(key));
+
+         if (component.size() == 1 && !references.get(key).contains(key))
+         {
+            out.put(key, substitute(raw.get(key)));
+            return;
+         }
+
+         cyclic.addAll(component);
+         for (String k : component)
+            out.put(k, raw.get(k));
+         debug.warning("Circular property reference, placeholders will not be expanded: " + component);
+      }
+
+      private String substitute(String value)
+      {
+         StringBuilder sb = new StringBuilder(value.length());
+         int pos = 0;
+         int start = value.indexOf(OPEN);
+         while (start >= 0)
+         {
+            int end = value.indexOf(CLOSE, start + OPEN.length());
+            if (end < 0)
+               break;
+
+            String name = value.substring(start + OPEN.length(), end);
+            String replacement = null;
+            if (name.startsWith(ENV_PREFIX))
+               replacement = System.getenv(name.substring(ENV_PREFIX.length()));
+            else if (!cyclic.contains(name))
+               replacement = out.get(name);
+
+            sb.append(value, pos, start);
+            sb.append(replacement != null ? replacement : value.substring(start, end + CLOSE.length()));
+            pos = end + CLOSE.length();
+            start = value.indexOf(OPEN, pos);
+         }
+
+         return sb.append(value, pos, value.length()).toString();
+      }
+   }
+
+   /**
+    * A key being visited by the depth-first search of a {@link Resolver}.
+    */
+   private static final class Visit
+   {
+      final String key;
+      final int index;
+      final Iterator<String> refs;
+      int lowLink;
+
+      Visit(String key, int index, Iterator<String> refs)
+      {
+         this.key = key;
+         this.index = index;
+         this.refs = refs;
+         this.lowLink = index;
+      }
+   }
+}
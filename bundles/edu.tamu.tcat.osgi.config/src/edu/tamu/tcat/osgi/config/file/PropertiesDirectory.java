@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A directory of properties file fragments, such as a {@code conf.d} directory, that together
+ * define a single set of property values.
+ * <p>
+ * Every regular file in the directory whose name ends with {@value #FRAGMENT_SUFFIX} is a
+ * fragment. Fragments are merged in lexical order of their file names, so a value defined by
+ * a fragment replaces any value for the same key from fragments whose names sort before it.
+ * <p>
+ * The parsed content of each fragment is retained between loads. When the directory is loaded
+ * again, only fragments that have been added or whose size or modification time has changed
+ * are read, and of those only the ones whose content actually differs are parsed again.
+ * Fragments that must be parsed are parsed in parallel on a fork-join pool owned by this
+ * instance.
+ * <p>
+ * A fragment that cannot be read or parsed keeps the values it had when it was last loaded,
+ * so that a broken edit does not remove its keys from the configuration. It is read again on
+ * each load until it succeeds. A new fragment that cannot be read is omitted.
+ */
+final class PropertiesDirectory implements Closeable
+{
+   private static final Logger debug = Logger.getLogger("edu.tamu.tcat.osgi.config.file.simple");
+
+   static final String FRAGMENT_SUFFIX = ".properties";
+
+   private final Path dir;
+
+   /** The most recently loaded fragments, keyed and ordered by file name. */
+   //@GuardedBy("this")
+   private SortedMap<String, Fragment> fragments = new TreeMap<String, Fragment>();
+   //@GuardedBy("this")
+   private ForkJoinPool pool;
+
+   PropertiesDirectory(Path dir)
+   {
+      this.dir = dir;
+   }
+
+   Path getPath()
+   {
+      return dir;
+   }
+
+   /**
+    * @return {@code true} if the name of the given file identifies a fragment.
+    */
+   static boolean isFragment(Path file)
+   {
+      return file.getFileName().toString().endsWith(FRAGMENT_SUFFIX);
+   }
+
+   /**
+    * @return {@code true} if any fragment has been added, removed, or has a different size or
+    *       modification time than when the directory was last loaded.
+    */
+   synchronized boolean hasChanged() throws IOException
+   {
+      List<Path> files = listFragments();
+      if (files.size() != fragments.size())
+         return true;
+
+      for (Path file : files)
+      {
+         Fragment fragment = fragments.get(file.getFileName().toString());
+         if (fragment == null || !fragment.matches(Files.readAttributes(file, BasicFileAttributes.class)))
+            return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * Load all fragments, reusing the values of fragments that have not changed since the last load.
+    *
+    * @return A new map holding the merged values of all fragments.
+    * @throws IOException If the directory cannot be listed. Fragments that cannot be read are
+    *       logged; their previously loaded values are retained, if any.
+    */
+   synchronized Map<String, String> load() throws IOException
+   {
+      SortedMap<String, Fragment> loaded = new TreeMap<String, Fragment>();
+      List<ParseTask> changed = new ArrayList<ParseTask>();
+      for (Path file : listFragments())
+      {
+         String name = file.getFileName().toString();
+         Fragment previous = fragments.get(name);
+         if (previous != null && previous.matches(Files.readAttributes(file, BasicFileAttributes.class)))
+            loaded.put(name, previous);
+         else
+            changed.add(new ParseTask(file, previous));
+      }
+
+      for (Fragment fragment : parse(changed))
+         loaded.put(fragment.name, fragment);
+
+      fragments = loaded;
+      debug.fine("Loaded (" + loaded.size() + ") fragments from " + dir + ", (" + changed.size() + ") read");
+
+      int size = 0;
+      for (Fragment fragment : loaded.values())
+         size += fragment.values.size();
+
+      Map<String, String> merged = new HashMap<String, String>((int)(size / 0.75f) + 1);
+      for (Fragment fragment : loaded.values())
+         merged.putAll(fragment.values);
+
+      return merged;
+   }
+
+   @Override
+   public synchronized void close()
+   {
+      if (pool != null)
+         pool.shutdown();
+      pool = null;
+   }
+
+   /**
+    * @return The fragments that could be read, and the previously loaded fragments in place of
+    *       those that could not. A single fragment is parsed on the calling thread; otherwise
+    *       the fragments are parsed in parallel.
+    */
+   //@GuardedBy("this")
+   private List<Fragment> parse(List<ParseTask> tasks)
+   {
+      List<Fragment> parsed = new ArrayList<Fragment>(tasks.size());
+      if (tasks.isEmpty())
+         return parsed;
+
+      if (tasks.size() == 1)
+      {
+         ParseTask task = tasks.get(0);
+         try
+         {
+            parsed.add(task.call());
+         }
+         catch (Exception e)
+         {
+            failed(task, e, parsed);
+         }
+         return parsed;
+      }
+
+      if (pool == null)
+         pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+      List<Future<Fragment>> results = pool.invokeAll(tasks);
+      for (int ix = 0; ix < results.size(); ix++)
+      {
+         try
+         {
+            parsed.add(results.get(ix).get());
+         }
+         catch (ExecutionException e)
+         {
+            failed(tasks.get(ix), e.getCause(), parsed);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading properties fragments from " + dir, e);
+         }
+      }
+
+      return parsed;
+   }
+
+   private static void failed(ParseTask task, Throwable error, List<Fragment> parsed)
+   {
+      if (task.previous == null)
+      {
+         debug.log(Level.WARNING, "Failed loading properties fragment [" + task.file + "], skipping", error);
+         return;
+      }
+
+      debug.log(Level.WARNING, "Failed loading properties fragment [" + task.file + "], retaining previously loaded values", error);
+      parsed.add(task.previous);
+   }
+
+   /**
+    * @return The fragments currently in the directory, in lexical order of their file names.
+    */
+   private List<Path> listFragments() throws IOException
+   {
+      List<Path> files = new ArrayList<Path>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + FRAGMENT_SUFFIX))
+      {
+         for (Path file : stream)
+         {
+            if (Files.isRegularFile(file))
+               files.add(file);
+         }
+      }
+
+      Collections.sort(files);
+      return files;
+   }
+
+   private static final class Fragment
+   {
+      final String name;
+      final FileStamp stamp;
+      final Map<String, String> values;
+
+      Fragment(String name, FileStamp stamp, Map<String, String> values)
+      {
+         this.name = name;
+         this.stamp = stamp;
+         this.values = values;
+      }
+
+      boolean matches(BasicFileAttributes attrs)
+      {
+         return attrs.size() == stamp.getSize() && attrs.lastModifiedTime().toMillis() == stamp.getLastModified();
+      }
+   }
+
+   private static final class ParseTask implements Callable<Fragment>
+   {
+      private final Path file;
+      private final Fragment previous;
+
+      ParseTask(Path file, Fragment previous)
+      {
+         this.file = file;
+         this.previous = previous;
+      }
+
+      @Override
+      public Fragment call() throws IOException
+      {
+         String name = file.getFileName().toString();
+         long lastModified = Files.getLastModifiedTime(file).toMillis();
+         byte[] content = PropertiesParser.readAll(file);
+         FileStamp stamp = FileStamp.of(lastModified, content);
+
+         // touched but not edited; keep the values parsed previously
+         if (previous != null && previous.stamp.hasSameContent(stamp))
+            return new Fragment(name, stamp, previous.values);
+
+         return new Fragment(name, stamp, PropertiesParser.parse(content));
+      }
+   }
+}
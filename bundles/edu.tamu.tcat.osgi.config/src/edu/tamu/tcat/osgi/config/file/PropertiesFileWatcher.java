@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches a single properties file, or a directory of properties file fragments, for changes
+ * made outside of the application and invokes a callback once the file has stopped changing
+ * for a configurable quiet period.
+ * <p>
+ * The parent directory of the file is watched rather than the file itself so that changes are
+ * detected when an editor saves by writing a new file and renaming it over the original.
+ * When watching a directory, a change to any fragment (see {@link PropertiesDirectory}) is
+ * reported. The callback is invoked on the watcher's own daemon thread and is responsible for
+ * determining whether the content of the file actually changed.
+ */
+final class PropertiesFileWatcher implements Closeable, Runnable
+{
+   private static final Logger debug = Logger.getLogger("edu.tamu.tcat.osgi.config.file.simple");
+
+   private final Path file;
+   private final boolean directory;
+   private final long debounceMillis;
+   private final Runnable onChange;
+
+   private WatchService service;
+   private Thread thread;
+
+   /**
+    * @param file The file or directory to watch.
+    * @param debounceMillis The period, in milliseconds, during which no further changes must
+    *       be reported before the callback is invoked.
+    * @param onChange The callback to invoke after the file has changed.
+    */
+   PropertiesFileWatcher(Path file, long debounceMillis, Runnable onChange)
+   {
+      this.file = file.toAbsolutePath();
+      this.directory = Files.isDirectory(file);
+      this.debounceMillis = Math.max(0, debounceMillis);
+      this.onChange = onChange;
+   }
+
+   /**
+    * Begin watching the file.
+    *
+    * @throws IOException If the file system does not support watching the directory.
+    */
+   synchronized void start() throws IOException
+   {
+      if (service != null)
+         throw new IllegalStateException("Watcher already started for " + file);
+
+      Path dir = directory ? file : file.getParent();
+      service = dir.getFileSystem().newWatchService();
+      dir.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+      thread = new Thread(this, "Configuration file watcher [" + file + "]");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   @Override
+   public synchronized void close()
+   {
+      if (service == null)
+         return;
+
+      try
+      {
+         service.close();
+      }
+      catch (IOException e)
+      {
+         debug.log(Level.WARNING, "Failed closing watch service for " + file, e);
+      }
+
+      thread.interrupt();
+      service = null;
+      thread = null;
+   }
+
+   @Override
+   public void run()
+   {
+      WatchService watchService;
+      synchronized (this)
+      {
+         watchService = service;
+      }
+
+      try
+      {
+         while (!Thread.currentThread().isInterrupted())
+         {
+            if (!isRelevant(watchService.take()))
+               continue;
+
+            // wait for a quiet period so that a burst of events results in a single callback
+            long quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+            long remaining;
+            while ((remaining = quietUntil - System.nanoTime()) > 0)
+            {
+               WatchKey next = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+               if (next == null)
+                  break;
+
+               if (isRelevant(next))
+                  quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+            }
+
+            try
+            {
+               onChange.run();
+            }
+            catch (Exception e)
+            {
+               debug.log(Level.WARNING, "Failed processing change to " + file, e);
+            }
+         }
+      }
+      catch (InterruptedException | ClosedWatchServiceException e)
+      {
+         // closed; exit quietly
+      }
+   }
+
+   private boolean isRelevant(WatchKey key)
+   {
+      boolean relevant = false;
+      for (WatchEvent<?> event : key.pollEvents())
+      {
+         if (event.kind() == OVERFLOW)
+            relevant = true;
+         else if (directory)
+            relevant |= PropertiesDirectory.isFragment((Path)event.context());
+         else if (file.getFileName().equals(event.context()))
+            relevant = true;
+      }
+
+      if (!key.reset())
+         debug.warning("Directory " + (directory ? file : file.getParent()) + " is no longer accessible; changes will not be detected.");
+
+      return relevant;
+   }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses the content of a {@code .properties} file directly into a map of values.
+ * <p>
+ * This follows the format accepted by {@link java.util.Properties#load(java.io.InputStream)}:
+ * content is read as ISO 8859-1; {@code #} and {@code !} introduce comment lines; keys are
+ * terminated by {@code =}, {@code :} or whitespace; a line ending in an odd number of
+ * backslashes continues on the next line; and the {@code \t}, {@code \n}, {@code \f},
+ * {@code \r} and {@code \}{@code uXXXX} escapes are recognized. Later definitions of a key
+ * replace earlier ones.
+ * <p>
+ * Unlike {@code Properties.load}, the file is read with a single bulk channel read and parsed
+ * in place, and values are stored in an unsynchronized map sized for the content.
+ */
+final class PropertiesParser
+{
+   /** Rough average size of an entry, used to pre-size the result map. */
+   private static final int BYTES_PER_ENTRY_ESTIMATE = 32;
+
+   private final byte[] in;
+   private int pos;
+
+   /** Buffer holding the current logical line, with continuations joined. */
+   private char[] line = new char[256];
+   /** Buffer used to decode escape sequences. */
+   private char[] conv = new char[256];
+
+   private PropertiesParser(byte[] in)
+   {
+      this.in = in;
+   }
+
+   /**
+    * Read and parse a properties file.
+    *
+    * @throws IOException If the file cannot be read.
+    * @throws IllegalArgumentException If the file contains a malformed {@code \}{@code uXXXX} escape.
+    */
+   static Map<String, String> parse(Path file) throws IOException
+   {
+      return parse(readAll(file));
+   }
+
+   /**
+    * Parse the content of a properties file.
+    *
+    * @throws IllegalArgumentException If the content contains a malformed {@code \}{@code uXXXX} escape.
+    */
+   static Map<String, String> parse(byte[] content)
+   {
+      int capacity = Math.max(16, (int)(content.length / BYTES_PER_ENTRY_ESTIMATE / 0.75f) + 1);
+      Map<String, String> values = new HashMap<String, String>(capacity);
+      new PropertiesParser(content).parseInto(values);
+      return values;
+   }
+
+   static byte[] readAll(Path file) throws IOException
+   {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+      {
+         long size = channel.size();
+         if (size > Integer.MAX_VALUE - 8)
+            throw new IOException("Properties file is too large to load [" + file + "]");
+
+         ByteBuffer buf = ByteBuffer.allocate((int)size);
+         while (buf.hasRemaining())
+         {
+            if (channel.read(buf) < 0)
+               break;
+         }
+
+         if (buf.hasRemaining())
+         {
+            // file was truncated while reading; return what was read
+            byte[] partial = new byte[buf.position()];
+            System.arraycopy(buf.array(), 0, partial, 0, partial.length);
+            return partial;
+         }
+
+         return buf.array();
+      }
+   }
+
+   private void parseInto(Map<String, String> values)
+   {
+      int limit;
+      while ((limit = readLine()) >= 0)
+      {
+         int keyLen = 0;
+         int valueStart = limit;
+         boolean hasSep = false;
+         boolean precedingBackslash = false;
+         while (keyLen < limit)
+         {
+            char c = line[keyLen];
+            if ((c == '=' || c == ':') && !precedingBackslash)
+            {
+               valueStart = keyLen + 1;
+               hasSep = true;
+               break;
+            }
+            if ((c == ' ' || c == '\t' || c == '\f') && !precedingBackslash)
+            {
+               valueStart = keyLen + 1;
+               break;
+            }
+
+            precedingBackslash = (c == '\\') ? !precedingBackslash : false;
+            keyLen++;
+         }
+
+         while (valueStart < limit)
+         {
+            char c = line[valueStart];
+            if (c != ' ' && c != '\t' && c != '\f')
+            {
+               if (!hasSep && (c == '=' || c == ':'))
+                  hasSep = true;
+               else
+                  break;
+            }
+            valueStart++;
+         }
+
+         String key = convert(0, keyLen);
+         String value = convert(valueStart, limit - valueStart);
+         values.put(key, value);
+      }
+   }
+
+   /**
+    * Read the next logical line into {@link #line}, skipping blank lines and comments, joining
+    * continued lines and removing leading whitespace.
+    *
+    * @return The length of the line, or {@code -1} if the end of input has been reached.
+    */
+   private int readLine()
+   {
+      int len = 0;
+      boolean skipWhiteSpace = true;
+      boolean appendedLineBegin = false;
+      boolean precedingBackslash = false;
+      boolean skipLF = false;
+
+      while (true)
+      {
+         if (pos >= in.length)
+         {
+            if (len == 0)
+               return -1;
+            if (precedingBackslash)
+               len--;
+            return len;
+         }
+
+         char c = (char)(in[pos++] & 0xff);
+         if (skipLF)
+         {
+            skipLF = false;
+            if (c == '\n')
+               continue;
+         }
+
+         if (skipWhiteSpace)
+         {
+            if (c == ' ' || c == '\t' || c == '\f')
+               continue;
+            if (!appendedLineBegin && (c == '\r' || c == '\n'))
+               continue;
+            skipWhiteSpace = false;
+            appendedLineBegin = false;
+         }
+
+         // a comment may only begin a logical line
+         if (len == 0 && (c == '#' || c == '!'))
+         {
+            skipComment();
+            skipWhiteSpace = true;
+            appendedLineBegin = false;
+            precedingBackslash = false;
+            continue;
+         }
+
+         if (c != '\n' && c != '\r')
+         {
+            if (len == line.length)
+               line = grow(line);
+            line[len++] = c;
+            precedingBackslash = (c == '\\') ? !precedingBackslash : false;
+            continue;
+         }
+
+         // end of a natural line
+         if (len == 0)
+         {
+            skipWhiteSpace = true;
+            continue;
+         }
+
+         if (pos >= in.length)
+         {
+            if (precedingBackslash)
+               len--;
+            return len;
+         }
+
+         if (!precedingBackslash)
+            return len;
+
+         // continuation: drop the backslash and join the next line, less its leading whitespace
+         len--;
+         skipWhiteSpace = true;
+         appendedLineBegin = true;
+         precedingBackslash = false;
+         if (c == '\r')
+            skipLF = true;
+      }
+   }
+
+   private void skipComment()
+   {
+      while (pos < in.length)
+      {
+         byte b = in[pos];
+         if (b == '\n' || b == '\r')
+            return;
+         pos++;
+      }
+   }
+
+   /**
+    * Decode escape sequences in a region of {@link #line}.
+    */
+   private String convert(int off, int len)
+   {
+      int end = off + len;
+      int ix = off;
+      while (ix < end && line[ix] != '\\')
+         ix++;
+
+      // common case: nothing to decode
+      if (ix == end)
+         return new String(line, off, len);
+
+      if (conv.length < len)
+         conv = new char[Math.max(len, conv.length * 2)];
+
+      int outLen = 0;
+      while (off < end)
+      {
+         char c = line[off++];
+         if (c != '\\')
+         {
+            conv[outLen++] = c;
+            continue;
+         }
+
+         if (off == end)
+            break;
+
+         c = line[off++];
+         if (c == 'u')
+         {
+            if (end - off < 4)
+               throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+
+            int value = 0;
+            for (int i = 0; i < 4; i++)
+            {
+               int digit = Character.digit(line[off++], 16);
+               if (digit < 0)
+                  throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+               value = (value << 4) + digit;
+            }
+            conv[outLen++] = (char)value;
+         }
+         else
+         {
+            if (c == 't')
+               c = '\t';
+            else if (c == 'r')
+               c = '\r';
+            else if (c == 'n')
+               c = '\n';
+            else if (c == 'f')
+               c = '\f';
+            conv[outLen++] = c;
+         }
+      }
+
+      return new String(conv, 0, outLen);
+   }
+
+   private static char[] grow(char[] buf)
+   {
+      char[] grown = new char[buf.length * 2];
+      System.arraycopy(buf, 0, grown, 0, buf.length);
+      return grown;
+   }
+}
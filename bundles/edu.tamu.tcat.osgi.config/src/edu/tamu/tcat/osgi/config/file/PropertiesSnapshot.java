@@ -0,0 +1,344 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.tamu.tcat.osgi.config.ConfigurationChangeEvent;
+import edu.tamu.tcat.osgi.config.ConfigurationProperties;
+import edu.tamu.tcat.osgi.config.DefaultSupplier;
+
+/**
+ * An immutable set of property values captured at a single point in time.
+ * <p>
+ * Instances are never modified once constructed. Whenever the configuration changes, a new
+ * snapshot is built and published in place of the old one, so readers may access a snapshot
+ * from any thread without synchronization.
+ * <p>
+ * Each snapshot also caches the typed values that have been converted from its raw string
+ * values. Since the cache lives and dies with the snapshot, it never needs to be invalidated
+ * explicitly; replacing the snapshot discards it. Likewise, the keys are sorted the first time
+ * a range of keys is requested and the sorted index is retained for the life of the snapshot.
+ * Failed conversions are cached as well, so that a malformed value is converted, and the
+ * failure reported, only once per snapshot rather than on every read, as are default values
+ * computed on demand for properties that are undefined.
+ * <p>
+ * Snapshots are numbered by the service that publishes them, in the order they are built.
+ */
+final class PropertiesSnapshot
+{
+   private final Map<String, String> values;
+   private final Map<String, String> readOnly;
+   private final long version;
+
+   /**
+    * Converted values indexed by requested type and then by property name. Nesting the maps
+    * allows lookups without allocating a composite key.
+    */
+   private final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> converted =
+         new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Object>>();
+
+   /** Default values computed on a miss, indexed by property name. */
+   private final ConcurrentMap<String, SuppliedDefault> defaults = new ConcurrentHashMap<String, SuppliedDefault>();
+
+   /** The entries in key order, built on first use. */
+   private volatile SortedIndex sorted;
+
+   /** The public view of this snapshot, built on first use. */
+   private volatile SnapshotView view;
+
+   /** The estimated heap footprint of the values, or a negative value if not yet computed. */
+   private volatile long heapBytes = -1;
+
+   /**
+    * @param values The property values. Ownership of this map passes to the snapshot; callers
+    *       must not retain or modify it after construction.
+    * @param version The version of the snapshot.
+    */
+   private PropertiesSnapshot(Map<String, String> values, long version)
+   {
+      this.values = values;
+      this.readOnly = Collections.unmodifiableMap(values);
+      this.version = version;
+   }
+
+   /**
+    * Create a snapshot that takes ownership of the supplied map, avoiding a copy. Used for
+    * maps that have been freshly built by the caller, such as the result of parsing a file.
+    */
+   static PropertiesSnapshot wrap(Map<String, String> values, long version)
+   {
+      return new PropertiesSnapshot(values, version);
+   }
+
+   long getVersion()
+   {
+      return version;
+   }
+
+   /**
+    * @return The public view of this snapshot, evaluating properties with the converters of
+    *       the given service.
+    */
+   SnapshotView getView(SimpleFileConfigurationProperties props)
+   {
+      SnapshotView v = view;
+      if (v == null)
+      {
+         // benign race: concurrent callers may each build an equivalent view
+         v = new SnapshotView(props, this);
+         view = v;
+      }
+      return v;
+   }
+
+   String get(String name)
+   {
+      return values.get(name);
+   }
+
+   /**
+    * @return The previously converted value of the named property as the given type, or
+    *       {@code null} if no such conversion has been cached.
+    */
+   Object getConverted(String name, Class<?> type)
+   {
+      ConcurrentMap<String, Object> byName = converted.get(type);
+      if (byName == null)
+         return null;
+
+      return byName.get(name);
+   }
+
+   /**
+    * Cache the result of converting the named property to the given type.
+    */
+   void putConverted(String name, Class<?> type, Object value)
+   {
+      ConcurrentMap<String, Object> byName = converted.get(type);
+      if (byName == null)
+      {
+         ConcurrentMap<String, Object> created = new ConcurrentHashMap<String, Object>();
+         byName = converted.putIfAbsent(type, created);
+         if (byName == null)
+            byName = created;
+      }
+
+      byName.put(name, value);
+   }
+
+   /**
+    * Obtain a default value computed by the given supplier, calling the supplier only if no
+    * value computed by the same supplier for the same property and type is retained. Only the
+    * most recently computed default is retained for each property, so that the cache cannot
+    * grow beyond the number of properties read.
+    */
+   @SuppressWarnings("unchecked")
+   <T> T getSuppliedDefault(String name, Class<T> type, DefaultSupplier<? extends T> supplier)
+   {
+      SuppliedDefault memo = defaults.get(name);
+      if (memo != null && memo.type == type && memo.supplier == supplier)
+         return (T)memo.value;
+
+      T value = supplier.get();
+      defaults.put(name, new SuppliedDefault(type, supplier, value));
+      return value;
+   }
+
+   /**
+    * Remember that converting the named property to the given type failed. Later reads of the
+    * property as that type obtain the failure from {@link #getConverted(String, Class)}.
+    *
+    * @return The recorded failure, which is the failure recorded by another thread if it was
+    *       first to do so.
+    */
+   ConversionFailure putFailure(String name, Class<?> type, RuntimeException error)
+   {
+      ConcurrentMap<String, Object> byName = converted.get(type);
+      if (byName == null)
+      {
+         ConcurrentMap<String, Object> created = new ConcurrentHashMap<String, Object>();
+         byName = converted.putIfAbsent(type, created);
+         if (byName == null)
+            byName = created;
+      }
+
+      ConversionFailure failure = new ConversionFailure(error);
+      Object existing = byName.putIfAbsent(name, failure);
+      return (existing instanceof ConversionFailure) ? (ConversionFailure)existing : failure;
+   }
+
+   /**
+    * @param version The version of the new snapshot.
+    * @return A snapshot holding the same values as this one but with an empty conversion cache.
+    *       Used when the converters that produced the cached values are no longer valid.
+    */
+   PropertiesSnapshot withoutConversions(long version)
+   {
+      return new PropertiesSnapshot(values, version);
+   }
+
+   /**
+    * Compute the keys whose values differ between a previous snapshot and this one.
+    *
+    * @param previous The snapshot this one replaces.
+    * @param source The service to report as the source of the change.
+    * @return A description of the change, or {@code null} if the values are identical.
+    */
+   ConfigurationChangeEvent diff(PropertiesSnapshot previous, ConfigurationProperties source)
+   {
+      if (previous.values == values)
+         return null;
+
+      Set<String> added = new HashSet<String>();
+      Set<String> modified = new HashSet<String>();
+      for (Map.Entry<String, String> entry : values.entrySet())
+      {
+         String old = previous.values.get(entry.getKey());
+         if (old == null)
+            added.add(entry.getKey());
+         else if (!old.equals(entry.getValue()))
+            modified.add(entry.getKey());
+      }
+
+      Set<String> removed = new HashSet<String>();
+      if (previous.values.size() + added.size() != values.size())
+      {
+         for (String key : previous.values.keySet())
+         {
+            if (!values.containsKey(key))
+               removed.add(key);
+         }
+      }
+
+      if (added.isEmpty() && removed.isEmpty() && modified.isEmpty())
+         return null;
+
+      return new ConfigurationChangeEvent(source, added, removed, modified);
+   }
+
+   /**
+    * @return A read-only view of the entries whose keys begin with the given prefix, in key order.
+    */
+   SortedMap<String, String> subset(String prefix)
+   {
+      return SortedIndexMap.withPrefix(getSortedIndex(), values, prefix);
+   }
+
+   private SortedIndex getSortedIndex()
+   {
+      SortedIndex index = sorted;
+      if (index == null)
+      {
+         // benign race: concurrent callers may each build an equivalent index
+         index = (values instanceof SortedIndex) ? (SortedIndex)values : ArraySortedIndex.of(values);
+         sorted = index;
+      }
+      return index;
+   }
+
+   int size()
+   {
+      return values.size();
+   }
+
+   /**
+    * @return An approximation of the heap occupied by the property values of this snapshot,
+    *       excluding converted values.
+    */
+   long estimateHeapBytes()
+   {
+      // changes as entries are decoded, so is not retained
+      if (values instanceof SnapshotTable)
+         return ((SnapshotTable)values).estimateHeapBytes();
+
+      long bytes = heapBytes;
+      if (bytes < 0)
+      {
+         // hash table slot plus entry object for each mapping
+         bytes = 16 + values.size() * (8L + 32L);
+         for (Map.Entry<String, String> entry : values.entrySet())
+            bytes += estimateHeapBytes(entry.getKey()) + estimateHeapBytes(entry.getValue());
+         heapBytes = bytes;
+      }
+      return bytes;
+   }
+
+   /**
+    * @return An approximation of the heap occupied by a string, assuming two bytes per character.
+    */
+   static long estimateHeapBytes(String str)
+   {
+      // string object plus character array header
+      return 24 + 16 + 2L * str.length();
+   }
+
+   /**
+    * A default value and the supplier and type it was computed for.
+    */
+   private static final class SuppliedDefault
+   {
+      final Class<?> type;
+      final DefaultSupplier<?> supplier;
+      final Object value;
+
+      SuppliedDefault(Class<?> type, DefaultSupplier<?> supplier, Object value)
+      {
+         this.type = type;
+         this.supplier = supplier;
+         this.value = value;
+      }
+   }
+
+   /**
+    * A cached failure to convert a property value, held in place of the converted value.
+    */
+   static final class ConversionFailure
+   {
+      final RuntimeException error;
+      private final AtomicBoolean reported = new AtomicBoolean();
+
+      private ConversionFailure(RuntimeException error)
+      {
+         this.error = error;
+      }
+
+      /**
+       * @return {@code true} for the first caller only; used to report each failure once.
+       */
+      boolean markReported()
+      {
+         return reported.compareAndSet(false, true);
+      }
+   }
+
+   /**
+    * @return A read-only view of the values in this snapshot. The same instance is returned
+    *       on every call.
+    */
+   Map<String, String> asMap()
+   {
+      return readOnly;
+   }
+}
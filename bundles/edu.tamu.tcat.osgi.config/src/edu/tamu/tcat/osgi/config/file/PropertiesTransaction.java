@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of changes to the properties file that is applied as a single unit.
+ * <p>
+ * Changes are collected in memory and have no effect until {@link #commit()} is called. On
+ * commit, the changes are validated and applied to the current content of the properties
+ * file, the file is written once and a single new snapshot is published. If the commit fails,
+ * neither the file nor the published values are changed. A transaction that is never committed
+ * is simply discarded.
+ * <p>
+ * Instances are obtained from {@link SimpleFileConfigurationProperties#begin()} and are not
+ * thread-safe; each should be used by a single thread.
+ *
+ * @since 2.0
+ */
+public final class PropertiesTransaction
+{
+   private final SimpleFileConfigurationProperties props;
+
+   /** Pending changes by key; a {@code null} value removes the key. */
+   private final Map<String, String> edits = new HashMap<String, String>();
+   private boolean replace;
+   private boolean done;
+
+   PropertiesTransaction(SimpleFileConfigurationProperties props)
+   {
+      this.props = props;
+   }
+
+   /**
+    * Set the value of a property.
+    *
+    * @param k The property key.
+    * @param v The new value.
+    * @return This transaction.
+    */
+   public PropertiesTransaction put(String k, String v)
+   {
+      checkKey(k);
+      if (v == null)
+         throw new IllegalArgumentException("value for [" + k + "] is null");
+
+      edits.put(k, v);
+      return this;
+   }
+
+   /**
+    * Remove a property. Has no effect on commit if the property is not defined in the
+    * properties file.
+    *
+    * @param k The property key.
+    * @return This transaction.
+    */
+   public PropertiesTransaction remove(String k)
+   {
+      checkKey(k);
+      edits.put(k, null);
+      return this;
+   }
+
+   /**
+    * Remove all properties from the properties file, including any changes made previously
+    * in this transaction. Properties set after this call form the entire new content of
+    * the file.
+    *
+    * @return This transaction.
+    */
+   public PropertiesTransaction clear()
+   {
+      checkOpen();
+      edits.clear();
+      replace = true;
+      return this;
+   }
+
+   /**
+    * Apply all changes in this transaction. The transaction may not be used again afterwards,
+    * whether or not the commit succeeds.
+    *
+    * @throws IllegalStateException If the properties cannot be written, or the properties file
+    *       could not be written. In this case neither the file nor the published values are
+    *       changed.
+    */
+   public void commit()
+   {
+      checkOpen();
+      done = true;
+      props.commitTransaction(edits, replace);
+   }
+
+   private void checkKey(String k)
+   {
+      checkOpen();
+      if (k == null || k.trim().isEmpty())
+         throw new IllegalArgumentException("key is not valid");
+   }
+
+   private void checkOpen()
+   {
+      if (done)
+         throw new IllegalStateException("Transaction has already been committed");
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ordered layers of property values that together make up a configuration. From lowest
+ * to highest precedence, the layers are:
+ * <ol>
+ * <li>built-in defaults,</li>
+ * <li>the primary properties file, which is the only layer that is ever written,</li>
+ * <li>any number of additional, read-only properties files, in the order they were listed,</li>
+ * <li>environment variables,</li>
+ * <li>OSGi framework or JVM system properties, and</li>
+ * <li>runtime overrides.</li>
+ * </ol>
+ * A value defined by a layer replaces any value for the same key in the layers beneath it.
+ * <p>
+ * Instances are immutable; each change produces a new instance from which a single merged
+ * map is built, so that a lookup against the merged map is one hash probe regardless of the
+ * number of layers.
+ */
+final class PropertySources
+{
+   private static final Map<String, String> NONE = Collections.emptyMap();
+
+   static final PropertySources EMPTY = new PropertySources(NONE, NONE, Collections.<Map<String, String>>emptyList(), NONE, NONE, NONE);
+
+   private final Map<String, String> defaults;
+   private final Map<String, String> file;
+   private final List<Map<String, String>> includes;
+   private final Map<String, String> environment;
+   private final Map<String, String> framework;
+   private final Map<String, String> overrides;
+
+   private PropertySources(Map<String, String> defaults,
+                           Map<String, String> file,
+                           List<Map<String, String>> includes,
+                           Map<String, String> environment,
+                           Map<String, String> framework,
+                           Map<String, String> overrides)
+   {
+      this.defaults = defaults;
+      this.file = file;
+      this.includes = includes;
+      this.environment = environment;
+      this.framework = framework;
+      this.overrides = overrides;
+   }
+
+   /**
+    * @return The values of the primary properties file. Callers must not modify the returned map.
+    */
+   Map<String, String> getFile()
+   {
+      return file;
+   }
+
+   Map<String, String> getDefaults()
+   {
+      return defaults;
+   }
+
+   Map<String, String> getOverrides()
+   {
+      return overrides;
+   }
+
+   /**
+    * @param defaults The built-in default values. Ownership of the map passes to the returned instance.
+    */
+   PropertySources withDefaults(Map<String, String> defaults)
+   {
+      return new PropertySources(defaults, file, includes, environment, framework, overrides);
+   }
+
+   /**
+    * @param file The values of the primary properties file. Ownership of the map passes to the
+    *       returned instance.
+    */
+   PropertySources withFile(Map<String, String> file)
+   {
+      return new PropertySources(defaults, file, includes, environment, framework, overrides);
+   }
+
+   /**
+    * Replace all layers that are read from outside the application, leaving the defaults and
+    * runtime overrides unchanged. Ownership of all supplied maps passes to the returned instance.
+    */
+   PropertySources withLoaded(Map<String, String> file,
+                              List<Map<String, String>> includes,
+                              Map<String, String> environment,
+                              Map<String, String> framework)
+   {
+      return new PropertySources(defaults, file, includes, environment, framework, overrides);
+   }
+
+   /**
+    * @param overrides The runtime overrides. Ownership of the map passes to the returned instance.
+    */
+   PropertySources withOverrides(Map<String, String> overrides)
+   {
+      return new PropertySources(defaults, file, includes, environment, framework, overrides);
+   }
+
+   /**
+    * Build the merged view of all layers.
+    * <p>
+    * If the primary file is the only layer that defines any values, as is the case for most
+    * applications, its map is returned as is rather than copied. Callers therefore must not
+    * modify the returned map.
+    */
+   Map<String, String> merge()
+   {
+      List<Map<String, String>> layers = new ArrayList<Map<String, String>>(includes.size() + 5);
+      layers.add(defaults);
+      layers.add(file);
+      layers.addAll(includes);
+      layers.add(environment);
+      layers.add(framework);
+      layers.add(overrides);
+
+      int size = 0;
+      Map<String, String> only = null;
+      int nonEmpty = 0;
+      for (Map<String, String> layer : layers)
+      {
+         if (layer.isEmpty())
+            continue;
+
+         nonEmpty++;
+         only = layer;
+         size += layer.size();
+      }
+
+      if (nonEmpty == 0)
+         return new HashMap<String, String>();
+      if (nonEmpty == 1 && only == file)
+         return file;
+
+      // sized for the sum of all layers so the map is never rehashed while merging
+      Map<String, String> merged = new HashMap<String, String>((int)(size / 0.75f) + 1);
+      for (Map<String, String> layer : layers)
+         merged.putAll(layer);
+
+      return merged;
+   }
+}
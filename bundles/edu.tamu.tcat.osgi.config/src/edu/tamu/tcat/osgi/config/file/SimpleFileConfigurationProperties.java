@@ -16,24 +16,48 @@
 
 package edu.tamu.tcat.osgi.config.file;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URI;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.SwitchPoint;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.osgi.framework.BundleContext;
 
+import edu.tamu.tcat.osgi.config.ConfigurationChangeEvent;
+import edu.tamu.tcat.osgi.config.ConfigurationChangeListener;
 import edu.tamu.tcat.osgi.config.ConfigurationProperties;
+import edu.tamu.tcat.osgi.config.ConfigurationSnapshot;
+import edu.tamu.tcat.osgi.config.DefaultSupplier;
+import edu.tamu.tcat.osgi.config.PropertyConverter;
+import edu.tamu.tcat.osgi.config.PropertyHandle;
+import edu.tamu.tcat.osgi.config.PropertyValues;
+import edu.tamu.tcat.osgi.config.file.PropertiesSnapshot.ConversionFailure;
 import edu.tamu.tcat.osgi.config.internal.Activator;
 
 /**
@@ -57,6 +81,33 @@ import edu.tamu.tcat.osgi.config.internal.Activator;
  * <p>
  * This implementation also provides some API for manually setting and managing properties not
  * defined by a config file.
+ * <p>
+ * Values may be requested as any type supported by a {@link PropertyConverter}. Additional
+ * converters may be contributed as OSGi services; see {@link #addConverter(PropertyConverter)}.
+ * <p>
+ * If the optional DS property {@code props.file.watch} is {@code true}, the properties file is
+ * watched for changes and reloaded automatically once its content has changed. See
+ * {@link #PROP_WATCH} and {@link #PROP_WATCH_DEBOUNCE}. Activation of large configurations
+ * may be accelerated by keeping a precompiled snapshot; see {@link #PROP_SNAPSHOT}.
+ * <p>
+ * Interested parties may be notified of the keys that change each time properties are
+ * reloaded or written by registering a {@link ConfigurationChangeListener}.
+ * Statistics and maintenance operations of each instance are available through JMX; see
+ * {@link SimpleFileConfigurationPropertiesMXBean}.
+ * <p>
+ * The values in effect are merged from several layers. From lowest to highest precedence:
+ * built-in defaults supplied as DS properties prefixed by {@value #PROP_DEFAULT_PREFIX},
+ * the properties file, additional read-only files named by {@link #PROP_INCLUDE},
+ * environment variables selected by {@link #PROP_ENV_PREFIX}, framework properties
+ * selected by {@link #PROP_FRAMEWORK_PREFIX}, and runtime overrides set with
+ * {@link #setOverride(String, String)}. The layers are merged once each time any of them
+ * changes rather than on every lookup. Only the properties file is ever written.
+ * <p>
+ * The path identified by {@code props.file.propertyName} may also be a directory, in which
+ * case every {@code *.properties} fragment in the directory is loaded and the fragments are
+ * merged in lexical order of their file names. Fragments are parsed in parallel and, when
+ * reloaded, only fragments that have changed are parsed again. Properties loaded from a
+ * directory cannot be written.
  */
 public class SimpleFileConfigurationProperties implements ConfigurationProperties
 {
@@ -64,276 +115,1487 @@ public class SimpleFileConfigurationProperties implements ConfigurationPropertie
 
    /**
     * The value of this property specifies an application-specific bundle or system property name
-    * which has a value identifying the file system path where properties are.
+    * which has a value identifying the file system path where properties are. The path may be
+    * a properties file or, since 2.0, a directory of properties file fragments.
     */
    public static final String PROP_FILE = "props.file.propertyName";
 
+   /**
+    * The value of this optional property indicates whether the properties file should be watched
+    * for changes made outside of the application and reloaded automatically. Defaults to
+    * {@code false}.
+    * @since 2.0
+    */
+   public static final String PROP_WATCH = "props.file.watch";
+
+   /**
+    * The value of this optional property is the number of milliseconds that the properties file
+    * must remain unchanged before an automatic reload is performed. This allows a burst of file
+    * system events, such as those produced by an editor saving a file, to result in a single
+    * reload. Defaults to {@value #DEFAULT_WATCH_DEBOUNCE}.
+    * @since 2.0
+    */
+   public static final String PROP_WATCH_DEBOUNCE = "props.file.watch.debounceMillis";
+
+   /**
+    * The value of this optional property indicates whether writes to the properties file are
+    * forced to the storage device before {@link #setProperty(String, String)} and
+    * {@link #setProperties(Map)} return. Defaults to {@code true}.
+    * @since 2.0
+    */
+   public static final String PROP_FSYNC = "props.file.fsync";
+
+   /**
+    * The value of this optional property is the number of milliseconds for which writes to the
+    * properties file may be deferred. When positive, {@link #setProperty(String, String)} and
+    * {@link #setProperties(Map)} publish new values immediately and schedule the file to be
+    * written once the period has elapsed, so that all changes made within the period are
+    * written together. Use {@link #flush()} to wait until changes are durable. Defaults to
+    * {@code 0}, which writes the file before each change is published.
+    * @since 2.0
+    */
+   public static final String PROP_WRITE_BEHIND = "props.file.writeBehindMillis";
+
+   /**
+    * The value of this optional property indicates whether a precompiled binary snapshot of the
+    * properties file should be kept alongside it, in a file with the additional extension
+    * {@code .snapshot}. When enabled, activation loads the snapshot instead of parsing the
+    * properties file as long as the properties file has not changed since the snapshot was
+    * built. Otherwise the properties file is parsed and the snapshot is rebuilt in the background.
+    * Not used when properties are loaded from a directory. Defaults to {@code false}.
+    * @since 2.0
+    */
+   public static final String PROP_SNAPSHOT = "props.file.snapshot";
+
+   /**
+    * The value of this optional property lists the names of additional system or OSGI framework
+    * properties or environment variables, separated by commas, each of which identifies a
+    * properties file that is loaded in the same manner as the file named by {@link #PROP_FILE}.
+    * Values defined by these files take precedence over those of the primary file and of files
+    * listed before them. These files are never written; a listed file that does not exist is
+    * ignored.
+    * @since 2.0
+    */
+   public static final String PROP_INCLUDE = "props.file.include";
+
+   /**
+    * The value of this optional property is a prefix that selects environment variables to
+    * be used as property values. The remainder of the variable name is converted to lower case
+    * and each underscore is replaced by a period to form the property key, so that with the
+    * prefix {@code APP_}, the variable {@code APP_DB_POOL_SIZE} defines {@code db.pool.size}.
+    * Environment variables are not used if this property is not set.
+    * @since 2.0
+    */
+   public static final String PROP_ENV_PREFIX = "props.env.prefix";
+
+   /**
+    * The value of this optional property is a prefix that selects OSGI framework or system
+    * properties to be used as property values. The remainder of the framework property name
+    * is the property key, so that with the prefix {@code app.}, the framework property
+    * {@code app.db.url} defines {@code db.url}. Framework properties are not used if this
+    * property is not set.
+    * @since 2.0
+    */
+   public static final String PROP_FRAMEWORK_PREFIX = "props.framework.prefix";
+
+   /**
+    * DS properties whose names start with this prefix supply built-in default values. The
+    * remainder of the DS property name is the property key, so that the DS property
+    * {@code props.default.db.pool.size=10} defines a default for {@code db.pool.size}.
+    * @since 2.0
+    */
+   public static final String PROP_DEFAULT_PREFIX = "props.default.";
+
+   /**
+    * The value of this optional property indicates whether placeholders in property values
+    * are expanded. When enabled, <code>${key}</code> is replaced by the value of another
+    * property and <code>${env:NAME}</code> by the value of an environment variable. Placeholders
+    * are expanded once when values are loaded or changed, not when they are read, and only the
+    * values that depend on a changed property are expanded again. Values written to the
+    * properties file retain their placeholders. Defaults to {@code false}.
+    * @since 2.0
+    */
+   public static final String PROP_INTERPOLATE = "props.interpolate";
+
+   /**
+    * The value of this optional property indicates whether statistics and maintenance
+    * operations are exposed through a platform MBean, see
+    * {@link SimpleFileConfigurationPropertiesMXBean}. Defaults to {@code true}.
+    * @since 2.0
+    */
+   public static final String PROP_JMX = "props.jmx";
+
+   private static final long DEFAULT_WATCH_DEBOUNCE = 500;
+
+   /**
+    * The currently published property values. Readers access this field without locking;
+    * writers build a replacement snapshot while holding the monitor and then publish it with
+    * a single volatile write. A {@code null} value indicates that this service is not initialized.
+    */
+   private volatile PropertiesSnapshot snapshot;
+   /** The layers from which the published snapshot was merged. */
+   //@GuardedBy("this")
+   private PropertySources sources = PropertySources.EMPTY;
+   /** The version of the most recently built snapshot. Never reset, so versions stay monotonic across reactivation. */
    //@GuardedBy("this")
-   private Properties allProps;
+   private long version;
    //@GuardedBy("this")
    private Path propsFile;
+   /** The loaded fragments if properties are specified by a directory rather than a file. */
+   //@GuardedBy("this")
+   private PropertiesDirectory propsDirectory;
+   //@GuardedBy("this")
+   private FileStamp propsStamp;
+   //@GuardedBy("this")
+   private PropertiesFileWatcher watcher;
+   /** Whether this service has been activated and not yet disposed. */
+   //@GuardedBy("this")
+   private boolean active;
+   /**
+    * Serializes loading, so that the values read by an earlier load can never be published
+    * after those of a later one. Acquired before, never while holding, the write lock or the
+    * monitor.
+    */
+   private final Object loadLock = new Object();
+   /**
+    * Serializes writes of deferred changes, which are made outside the monitor. Acquired
+    * before, never while holding, the monitor.
+    */
+   private final Object writeLock = new Object();
    private Map<String, Object> params;
+   private volatile boolean fsync = true;
+   private volatile long writeBehindMillis;
+   private volatile boolean useSnapshotFile;
+   private volatile boolean interpolate;
+   /** The expanded values and their dependencies if placeholders are expanded, otherwise {@code null}. */
+   //@GuardedBy("this")
+   private Interpolation interpolation;
+   //@GuardedBy("this")
+   private ScheduledExecutorService writer;
+   //@GuardedBy("this")
+   private ScheduledFuture<?> pendingWrite;
+   /** Published file values that have not yet been written to the properties file, if any. */
+   //@GuardedBy("this")
+   private Map<String, String> unwritten;
+   private final Callable<Void> writeTask = new Callable<Void>()
+   {
+      @Override
+      public Void call()
+      {
+         writePending();
+         return null;
+      }
+   };
+   private final ConverterRegistry converters = new ConverterRegistry();
+   private final ConfigurationStatistics statistics = new ConfigurationStatistics(this);
+   private final List<ConfigurationChangeListener> listeners = new CopyOnWriteArrayList<ConfigurationChangeListener>();
+   //@GuardedBy("this")
+   private ExecutorService notifier;
+   /**
+    * Guards the targets of constant call sites, see {@link #constant(String, Class, Object)}.
+    * Created on first use and invalidated whenever new values are published.
+    */
+   //@GuardedBy("this")
+   private SwitchPoint switchPoint;
 
    // called by DS
    public void activate(Map<String,Object> params)
    {
       this.params = params;
+      this.fsync = getBooleanParam(params, PROP_FSYNC, true);
+      this.writeBehindMillis = getLongParam(params, PROP_WRITE_BEHIND, 0);
+      this.useSnapshotFile = getBooleanParam(params, PROP_SNAPSHOT, false);
+      this.interpolate = getBooleanParam(params, PROP_INTERPOLATE, false);
+      synchronized (this)
+      {
+         active = true;
+         sources = sources.withDefaults(getDefaults(params));
+      }
       String filePropName = (String)params.get(PROP_FILE);
       Objects.requireNonNull(filePropName, "Missing required property '"+PROP_FILE+"'");
       loadProperties(filePropName);
+
+      if (getBooleanParam(params, PROP_JMX, true))
+         statistics.register(filePropName);
+
+      if (getBooleanParam(params, PROP_WATCH, false))
+         startWatcher(getLongParam(params, PROP_WATCH_DEBOUNCE, DEFAULT_WATCH_DEBOUNCE));
    }
 
    // called by DS
    public void dispose()
+   {
+      statistics.unregister();
+      // waits for a load in progress, which would otherwise publish values and restart the
+      // executors after they have been shut down
+      synchronized (loadLock)
+      {
+         synchronized (writeLock)
+         {
+            disposeLocked();
+         }
+      }
+   }
+
+   //@GuardedBy("loadLock, writeLock")
+   private void disposeLocked()
    {
       synchronized (this)
       {
-         allProps = null;
+         active = false;
+         if (watcher != null)
+            watcher.close();
+         watcher = null;
+         snapshot = null;
+         sources = PropertySources.EMPTY;
+         interpolation = null;
+         invalidateConstants();
+
+         if (propsDirectory != null)
+            propsDirectory.close();
+         propsDirectory = null;
+
+         if (notifier != null)
+            notifier.shutdown();
+         notifier = null;
+
+         if (pendingWrite != null)
+            pendingWrite.cancel(false);
+         pendingWrite = null;
+         if (writer != null)
+            writer.shutdown();
+         writer = null;
+
+         if (unwritten != null)
+         {
+            try
+            {
+               // the writer has been shut down, so the snapshot file is written in place
+               FileStamp stamp = writeFile(unwritten);
+               if (useSnapshotFile)
+                  writeSnapshotFile(SnapshotFile.locate(propsFile), stamp, unwritten);
+            }
+            catch (Exception e)
+            {
+               debug.log(Level.SEVERE, "Failed writing pending changes while disposing, changes have been lost", e);
+            }
+            unwritten = null;
+         }
       }
    }
 
    /**
-    * Force properties to be reloaded from file. This is typically used when the file was edited
-    * outside the scope of the application.
-    * @since 1.1
+    * Register a converter for an additional property value type. Intended to be bound by DS as
+    * an optional, multiple, dynamic reference to {@link PropertyConverter} services, which allows
+    * other bundles to extend the set of supported types. A contributed converter replaces any
+    * built-in converter for the same type.
+    * @since 2.0
     */
-   public void reloadProperties()
+   public void addConverter(PropertyConverter<?> converter)
    {
-      if (params == null || params.isEmpty())
-         throw new IllegalStateException("No initialization parameters available");
-      String filePropName = (String)params.get(PROP_FILE);
-      Objects.requireNonNull(filePropName, "Missing required property '"+PROP_FILE+"'");
-      loadProperties(filePropName);
+      converters.add(converter);
+      discardConversions();
    }
 
-   private void loadProperties(String filePropName)
+   /**
+    * Unregister a converter previously supplied to {@link #addConverter(PropertyConverter)}.
+    * @since 2.0
+    */
+   public void removeConverter(PropertyConverter<?> converter)
    {
-      try
+      converters.remove(converter);
+      discardConversions();
+   }
+
+   private void discardConversions()
+   {
+      synchronized (this)
       {
-         String source = null;
-         String propsFileStr = null;
-         Activator activator = Activator.getDefault();
-         if (activator != null)
+         PropertiesSnapshot current = snapshot;
+         if (current != null)
+            publish(current.withoutConversions(++version));
+      }
+   }
+
+   /**
+    * Register a listener to be notified when property values change. May be called directly or
+    * by DS to bind {@link ConfigurationChangeListener} services using the whiteboard pattern
+    * as an optional, multiple, dynamic reference.
+    * @since 2.0
+    */
+   public void addChangeListener(ConfigurationChangeListener listener)
+   {
+      Objects.requireNonNull(listener, "listener is null");
+      listeners.add(listener);
+   }
+
+   /**
+    * Unregister a listener previously supplied to {@link #addChangeListener(ConfigurationChangeListener)}.
+    * @since 2.0
+    */
+   public void removeChangeListener(ConfigurationChangeListener listener)
+   {
+      listeners.remove(listener);
+   }
+
+   /**
+    * Install a new snapshot and notify registered listeners of the keys that changed relative
+    * to the snapshot it replaces. Listeners are notified asynchronously so that callers holding
+    * the monitor are never delayed by listener code.
+    */
+   //@GuardedBy("this")
+   private void publish(PropertiesSnapshot next)
+   {
+      PropertiesSnapshot previous = snapshot;
+      snapshot = next;
+      invalidateConstants();
+
+      if (previous == null || listeners.isEmpty())
+         return;
+
+      final ConfigurationChangeEvent event = next.diff(previous, this);
+      if (event == null)
+         return;
+
+      if (notifier == null)
+         notifier = Executors.newSingleThreadExecutor(new ThreadFactory()
          {
-            BundleContext bc = activator.getContext();
-            if (bc != null)
+            @Override
+            public Thread newThread(Runnable r)
             {
-               propsFileStr = bc.getProperty(filePropName);
-               source = "System Property";
+               Thread thread = new Thread(r, "Configuration change notifier");
+               thread.setDaemon(true);
+               return thread;
             }
-         }
-         if (propsFileStr == null)
+         });
+
+      notifier.execute(new Runnable()
+      {
+         @Override
+         public void run()
          {
-            propsFileStr = System.getenv(filePropName);
-            source = "Environment Variable";
+            for (ConfigurationChangeListener listener : listeners)
+            {
+               try
+               {
+                  listener.configurationChanged(event);
+               }
+               catch (Exception e)
+               {
+                  debug.log(Level.WARNING, "Configuration change listener failed", e);
+               }
+            }
          }
+      });
+   }
 
-         if (propsFileStr == null)
-            throw new IllegalStateException("Failed to load properties specified by '"+filePropName+"'");
+   /**
+    * Force constant call sites to resolve their values again on their next call.
+    */
+   //@GuardedBy("this")
+   private void invalidateConstants()
+   {
+      if (switchPoint == null)
+         return;
 
-         Path p = Paths.get(propsFileStr);
-         if (!Files.exists(p))
-            throw new IllegalStateException("Failed to load properties specified by "+source+" '"+filePropName+"': File not found [" + p + "]");
+      SwitchPoint.invalidateAll(new SwitchPoint[] { switchPoint });
+      switchPoint = null;
+   }
 
-         Properties props = loadProperties(p);
-         synchronized (this)
-         {
-            propsFile = p;
-            allProps = props;
-            debug.log(Level.INFO, "Loaded ("+allProps.size()+") properties via "+source+" '"+filePropName+"' from " + propsFile);
-         }
-      }
-      catch (Exception e)
+   /**
+    * @return The switch point guarding values resolved against the current snapshot.
+    */
+   // called by ConstantPropertySite
+   SwitchPoint getSwitchPoint()
+   {
+      synchronized (this)
       {
-         debug.log(Level.SEVERE, "Failed loading properties. ", e);
-         synchronized (this)
-         {
-            allProps = new Properties();
-         }
+         if (switchPoint == null)
+            switchPoint = new SwitchPoint();
+         return switchPoint;
       }
    }
 
-   @Override
-   public <T> T getPropertyValue(String name, Class<T> type, T defaultValue)
+   /**
+    * Install new layers and publish a snapshot of their merged values.
+    *
+    * @param changed The keys that may have changed, or {@code null} if any key may have
+    *       changed. Used to limit the values whose placeholders are expanded again.
+    */
+   //@GuardedBy("this")
+   private void publishSources(PropertySources next, Collection<String> changed)
    {
-      try
-      {
-         T val = getPropertyValue(name, type);
-         if (val == null)
-            return defaultValue;
-         return val;
-      }
-      catch (Exception pe)
+      sources = next;
+      Map<String, String> merged = next.merge();
+      if (interpolate)
       {
-         debug.log(Level.WARNING, "Failed processing property value for [" + name + "], returning default", pe);
-         return defaultValue;
+         interpolation = (interpolation == null || changed == null)
+               ? Interpolation.resolve(merged)
+               : interpolation.update(merged, changed);
+         merged = interpolation.getResolved();
       }
+
+      publish(PropertiesSnapshot.wrap(merged, ++version));
    }
 
-   @SuppressWarnings("unchecked")
-   @Override
-   public <T> T getPropertyValue(String name, Class<T> type)
+   /**
+    * Set or remove a runtime override. Overrides take precedence over values from all other
+    * sources and are held in memory only; they are never written to the properties file.
+    *
+    * @param k The property key.
+    * @param v The overriding value, or {@code null} to remove the override.
+    * @since 2.0
+    */
+   public void setOverride(String k, String v)
    {
-      Objects.requireNonNull(name, "property name is null");
-      Objects.requireNonNull(type, "property type is null");
+      if (k == null || k.trim().isEmpty())
+         throw new IllegalArgumentException("key is not valid");
 
-      String str;
       synchronized (this)
       {
-         if (allProps == null)
-            throw new IllegalStateException("Not initialized");
+         Map<String, String> overrides = new HashMap<String, String>(sources.getOverrides());
+         if (v == null)
+            overrides.remove(k);
+         else
+            overrides.put(k, v);
 
-         str = allProps.getProperty(name);
+         updateOverrides(overrides, Collections.singleton(k));
       }
+   }
 
-      if (str == null)
-         return null;
-      if (type.isInstance(str))
-         return (T)str;
+   /**
+    * Remove all runtime overrides previously set by {@link #setOverride(String, String)}.
+    * @since 2.0
+    */
+   public void clearOverrides()
+   {
+      synchronized (this)
+      {
+         updateOverrides(new HashMap<String, String>(), sources.getOverrides().keySet());
+      }
+   }
 
-      try
+   //@GuardedBy("this")
+   private void updateOverrides(Map<String, String> overrides, Collection<String> changed)
+   {
+      PropertySources next = sources.withOverrides(overrides);
+      // before activation, overrides are retained and published along with the loaded values
+      if (snapshot == null)
+         sources = next;
+      else
+         publishSources(next, changed);
+   }
+
+   /**
+    * Force properties to be reloaded from file. This is typically used when the file was edited
+    * outside the scope of the application.
+    * @since 1.1
+    */
+   public void reloadProperties()
+   {
+      if (params == null || params.isEmpty())
+         throw new IllegalStateException("No initialization parameters available");
+      String filePropName = (String)params.get(PROP_FILE);
+      Objects.requireNonNull(filePropName, "Missing required property '"+PROP_FILE+"'");
+      loadProperties(filePropName);
+   }
+
+   private void startWatcher(long debounceMillis)
+   {
+      synchronized (this)
       {
-         if (Number.class.isAssignableFrom(type))
-         {
-            if (Byte.class.isAssignableFrom(type))
-               return (T)Byte.valueOf(str);
-            if (Short.class.isAssignableFrom(type))
-               return (T)Short.valueOf(str);
-            if (Integer.class.isAssignableFrom(type))
-               return (T)Integer.valueOf(str);
-            if (Long.class.isAssignableFrom(type))
-               return (T)Long.valueOf(str);
-            if (Float.class.isAssignableFrom(type))
-               return (T)Float.valueOf(str);
-            if (Double.class.isAssignableFrom(type))
-               return (T)Double.valueOf(str);
-
-            throw new IllegalStateException("Unhandled numeric type ["+type+"] for property ["+name+"] value ["+str+"]");
+         final Path watched = (propsDirectory != null) ? propsDirectory.getPath() : propsFile;
+         if (watched == null)
+         {
+            debug.warning("Properties not specified by file, changes will not be watched");
+            return;
          }
 
-         if (Boolean.class.isAssignableFrom(type))
-            return (T)Boolean.valueOf(str);
+         PropertiesFileWatcher fileWatcher = new PropertiesFileWatcher(watched, debounceMillis, new Runnable()
+         {
+            @Override
+            public void run()
+            {
+               reloadIfChanged();
+            }
+         });
+
+         try
+         {
+            fileWatcher.start();
+            watcher = fileWatcher;
+            debug.info("Watching properties file for changes: " + watched);
+         }
+         catch (IOException e)
+         {
+            debug.log(Level.WARNING, "Failed watching properties file [" + watched + "], changes will not be reloaded automatically", e);
+         }
       }
-      catch (NumberFormatException e)
+   }
+
+   /**
+    * Reload the properties file if its content differs from the content that was last loaded
+    * or written by this service.
+    */
+   private void reloadIfChanged()
+   {
+      Path file;
+      FileStamp lastStamp;
+      PropertiesDirectory directory;
+      synchronized (this)
       {
-         throw new IllegalStateException("Failed converting property ["+name+"] value ["+str+"] to primitive "+type, e);
+         file = propsFile;
+         lastStamp = propsStamp;
+         directory = propsDirectory;
       }
 
-      try
+      if (directory != null)
       {
-         if (Path.class.isAssignableFrom(type))
+         try
          {
-            return (T)Paths.get(str);
+            if (!directory.hasChanged())
+            {
+               debug.fine("Properties directory touched but no fragment has changed: " + directory.getPath());
+               return;
+            }
          }
-      }
-      catch (Exception e)
-      {
-         throw new IllegalStateException("Failed converting property ["+name+"] value ["+str+"] to OS file system path "+type, e);
+         catch (IOException e)
+         {
+            debug.log(Level.FINE, "Failed reading properties directory [" + directory.getPath() + "], reloading", e);
+         }
+
+         reloadProperties();
+         return;
       }
 
+      if (file == null || !Files.exists(file))
+         return;
+
       try
       {
-         if (URI.class.isAssignableFrom(type))
+         if (FileStamp.read(file).hasSameContent(lastStamp))
          {
-            return (T)new URI(str);
+            debug.fine("Properties file touched but content is unchanged: " + file);
+            return;
          }
       }
-      catch (Exception e)
+      catch (IOException e)
       {
-         throw new IllegalStateException("Failed converting property ["+name+"] value ["+str+"] to URI "+type, e);
+         debug.log(Level.FINE, "Failed reading properties file [" + file + "], reloading", e);
       }
 
-      throw new IllegalStateException("Unhandled type: " + type.getCanonicalName());
+      reloadProperties();
    }
 
-   private Properties loadProperties(Path filePath) throws Exception
+   private void loadProperties(String filePropName)
    {
-      debug.fine("Loading properties file from: " + filePath);
-
-      Properties props = new Properties();
-      try (InputStream str = Files.newInputStream(filePath))
-      {
-         props.load(str);
-      }
-      catch (IOException e)
+      synchronized (loadLock)
       {
-         throw new IllegalStateException("Unable to load properties file as stream "+filePath, e);
+         loadPropertiesLocked(filePropName);
       }
-
-      return props;
    }
 
-   // internal method, not part of public api
-   public void setProperties(Map<String, String> newProps)
+   /**
+    * Read all layers and publish the merged values. If the properties cannot be read, the
+    * previously published values are retained; only on first activation is an empty set of
+    * values published in their place.
+    */
+   //@GuardedBy("loadLock")
+   private void loadPropertiesLocked(String filePropName)
    {
-      //TODO: allow revert if operation failes
       synchronized (this)
       {
-         if (propsFile == null)
-            throw new IllegalStateException("Properties not specified by file, write is not allowed");
-
-         if (allProps == null)
-            throw new IllegalStateException("Not initialized");
-
-         allProps.clear();
-         allProps.putAll(newProps);
-         debug.info("Writing properties File: "+propsFile);
-         try (OutputStream out = Files.newOutputStream(propsFile))
-         {
-            allProps.store(out, null);
-         }
-         catch (Exception e)
+         // a reload triggered by the watcher or JMX may arrive after disposal
+         if (!active)
          {
-            debug.log(Level.SEVERE, "Failed writing properties file to ["+ propsFile + "]", e);
+            debug.fine("Not loading properties, the service has been disposed");
+            return;
          }
       }
-   }
 
-   // internal method, not part of public api
+      long start = System.nanoTime();
+      Map<String, String> environment = getEnvironmentLayer(params == null ? null : (String)params.get(PROP_ENV_PREFIX));
+      List<Map<String, String>> includes = loadIncludes();
+
+      String source = null;
+      Path p = null;
+      PropertiesDirectory directory = null;
+      FileStamp stamp = null;
+      SnapshotFile precompiled = null;
+      Map<String, String> loaded;
+      try
+      {
+         String propsFileStr = null;
+         BundleContext bc = getBundleContext();
+         if (bc != null)
+         {
+            propsFileStr = bc.getProperty(filePropName);
+            source = "System Property";
+         }
+         if (propsFileStr == null)
+         {
+            propsFileStr = System.getenv(filePropName);
+            source = "Environment Variable";
+         }
+
+         if (propsFileStr == null)
+            throw new IllegalStateException("Failed to load properties specified by '"+filePropName+"'");
+
+         Path file = Paths.get(propsFileStr);
+         if (!Files.exists(file))
+            throw new IllegalStateException("Failed to load properties specified by "+source+" '"+filePropName+"': File not found [" + file + "]");
+
+         if (Files.isDirectory(file))
+         {
+            synchronized (this)
+            {
+               directory = (propsDirectory != null && propsDirectory.getPath().equals(file)) ? propsDirectory : new PropertiesDirectory(file);
+            }
+            loaded = directory.load();
+         }
+         else
+         {
+            precompiled = useSnapshotFile ? SnapshotFile.read(SnapshotFile.locate(file), file) : null;
+            if (precompiled != null)
+            {
+               debug.fine("Loading properties from snapshot file: " + SnapshotFile.locate(file));
+               stamp = precompiled.getStamp();
+               loaded = precompiled.getValues();
+            }
+            else
+            {
+               long lastModified = Files.getLastModifiedTime(file).toMillis();
+               byte[] content = readPropertiesFile(file);
+               stamp = FileStamp.of(lastModified, content);
+               loaded = PropertiesParser.parse(content);
+            }
+         }
+         p = file;
+      }
+      catch (Exception e)
+      {
+         if (snapshot != null)
+         {
+            debug.log(Level.SEVERE, "Failed reloading properties, retaining previously loaded values. ", e);
+            return;
+         }
+
+         debug.log(Level.SEVERE, "Failed loading properties. ", e);
+         loaded = new HashMap<String, String>();
+      }
+
+      List<Map<String, String>> lower = new ArrayList<Map<String, String>>(includes);
+      lower.add(loaded);
+      lower.add(environment);
+      synchronized (this)
+      {
+         lower.add(sources.getDefaults());
+      }
+      Map<String, String> framework = getFrameworkLayer(params == null ? null : (String)params.get(PROP_FRAMEWORK_PREFIX), lower);
+
+      synchronized (this)
+      {
+         if (p != null)
+         {
+            if (propsDirectory != null && propsDirectory != directory)
+               propsDirectory.close();
+            propsDirectory = directory;
+            propsFile = (directory == null) ? p : null;
+            propsStamp = stamp;
+            discardUnwritten();
+         }
+         publishSources(sources.withLoaded(loaded, includes, environment, framework), null);
+         statistics.loaded(System.nanoTime() - start);
+         if (p != null)
+         {
+            if (directory == null && precompiled == null)
+               rebuildSnapshotFile(stamp, loaded);
+            debug.log(Level.INFO, "Loaded ("+loaded.size()+") properties via "+source+" '"+filePropName+"' from " + p);
+         }
+      }
+   }
+
+   /**
+    * Load the additional read-only properties files listed by {@link #PROP_INCLUDE}, in the
+    * order they are listed. Files that are not specified or cannot be read are skipped.
+    */
+   private List<Map<String, String>> loadIncludes()
+   {
+      List<Map<String, String>> includes = new ArrayList<Map<String, String>>();
+      if (params == null)
+         return includes;
+
+      for (String propName : getListParam(params, PROP_INCLUDE))
+      {
+         String fileStr = null;
+         BundleContext bc = getBundleContext();
+         if (bc != null)
+            fileStr = bc.getProperty(propName);
+         if (fileStr == null)
+            fileStr = System.getenv(propName);
+
+         if (fileStr == null)
+         {
+            debug.warning("Included properties file not specified by '" + propName + "', skipping");
+            continue;
+         }
+
+         Path p = Paths.get(fileStr);
+         if (!Files.exists(p))
+         {
+            debug.warning("Included properties file specified by '" + propName + "' not found [" + p + "], skipping");
+            continue;
+         }
+
+         try
+         {
+            Map<String, String> values = PropertiesParser.parse(readPropertiesFile(p));
+            includes.add(values);
+            debug.log(Level.INFO, "Loaded ("+values.size()+") properties via '"+propName+"' from " + p);
+         }
+         catch (Exception e)
+         {
+            debug.log(Level.WARNING, "Failed loading included properties file [" + p + "], skipping", e);
+         }
+      }
+
+      return includes;
+   }
+
+   /**
+    * @return The values of all environment variables whose names start with the given prefix,
+    *       keyed as described by {@link #PROP_ENV_PREFIX}. Empty if no prefix is configured.
+    */
+   private static Map<String, String> getEnvironmentLayer(String prefix)
+   {
+      Map<String, String> layer = new HashMap<String, String>();
+      if (prefix == null || prefix.isEmpty())
+         return layer;
+
+      for (Map.Entry<String, String> entry : System.getenv().entrySet())
+      {
+         String name = entry.getKey();
+         if (name.length() > prefix.length() && name.startsWith(prefix))
+            layer.put(name.substring(prefix.length()).toLowerCase(Locale.ROOT).replace('_', '.'), entry.getValue());
+      }
+
+      return layer;
+   }
+
+   /**
+    * @return The values of all framework properties that start with the given prefix, keyed as
+    *       described by {@link #PROP_FRAMEWORK_PREFIX}. Empty if no prefix is configured.
+    *       Framework properties cannot be enumerated, so in addition to all system properties
+    *       with the prefix, a framework property is looked up for each key defined by the
+    *       lower layers.
+    */
+   private static Map<String, String> getFrameworkLayer(String prefix, Collection<Map<String, String>> lower)
+   {
+      Map<String, String> layer = new HashMap<String, String>();
+      if (prefix == null || prefix.isEmpty())
+         return layer;
+
+      Properties system = System.getProperties();
+      for (String name : system.stringPropertyNames())
+      {
+         if (name.length() > prefix.length() && name.startsWith(prefix))
+            layer.put(name.substring(prefix.length()), system.getProperty(name));
+      }
+
+      BundleContext bc = getBundleContext();
+      if (bc == null)
+         return layer;
+
+      for (Map<String, String> values : lower)
+      {
+         for (String key : values.keySet())
+         {
+            if (layer.containsKey(key))
+               continue;
+
+            String value = bc.getProperty(prefix + key);
+            if (value != null)
+               layer.put(key, value);
+         }
+      }
+
+      return layer;
+   }
+
+   private static BundleContext getBundleContext()
+   {
+      Activator activator = Activator.getDefault();
+      return activator == null ? null : activator.getContext();
+   }
+
+   @Override
+   public <T> T getPropertyValue(String name, Class<T> type, T defaultValue)
+   {
+      statistics.read();
+      PropertiesSnapshot current = snapshot;
+      if (current == null)
+      {
+         debug.log(Level.WARNING, "Failed processing property value for [" + name + "], returning default", new IllegalStateException("Not initialized"));
+         return defaultValue;
+      }
+
+      return getPropertyValue(current, name, type, defaultValue);
+   }
+
+   @Override
+   public <T> T getPropertyValue(String name, Class<T> type)
+   {
+      statistics.read();
+      return getPropertyValue(getSnapshot(), name, type);
+   }
+
+   /**
+    * @since 2.0
+    */
+   @Override
+   public <T> T getPropertyValueOrElseGet(String name, Class<T> type, DefaultSupplier<? extends T> defaultSupplier)
+   {
+      statistics.read();
+      PropertiesSnapshot current = snapshot;
+      if (current == null)
+      {
+         Objects.requireNonNull(defaultSupplier, "default supplier is null");
+         debug.log(Level.WARNING, "Failed processing property value for [" + name + "], returning default", new IllegalStateException("Not initialized"));
+         return defaultSupplier.get();
+      }
+
+      return getPropertyValueOrElseGet(current, name, type, defaultSupplier);
+   }
+
+   /**
+    * @since 2.0
+    */
+   @Override
+   public PropertyValues getPropertyValues(Map<String, Class<?>> request)
+   {
+      return getPropertyValues(getSnapshot(), request);
+   }
+
+   /**
+    * @since 2.0
+    */
+   @Override
+   public <T> PropertyHandle<T> handle(String name, Class<T> type, T defaultValue)
+   {
+      Objects.requireNonNull(name, "property name is null");
+      Objects.requireNonNull(type, "property type is null");
+      return new SnapshotPropertyHandle<T>(this, name, type, defaultValue);
+   }
+
+   /**
+    * Obtain a call site whose target returns the value of a property as a constant. Intended
+    * for values, such as feature toggles, that are read so often that even the cost of a
+    * {@link PropertyHandle} is significant. The dynamic invoker of the call site should be held
+    * in a {@code static final} field, which allows the JIT to treat the value as a constant:
+    *
+    * <pre>
+    * static final MethodHandle FEATURE = config.constant("feature.x", boolean.class, false).dynamicInvoker();
+    * ...
+    * if ((boolean)FEATURE.invokeExact())
+    * </pre>
+    *
+    * The target is guarded by a {@link SwitchPoint} that is invalidated whenever new values
+    * are published, for example on reload or {@link #setProperty(String, String)}. Code
+    * compiled against the previous value is then deoptimized and the next call resolves the
+    * value again. Changes are therefore expensive for code that depends on constant values;
+    * they are intended for configuration that rarely changes.
+    *
+    * @param <T> The value type of the property
+    * @param name The name of the property.
+    * @param type The type of value to return, which is also the return type of the call site.
+    *       May be a primitive type such as {@code boolean.class}.
+    * @param defaultValue The value to return if the property is undefined or cannot be converted.
+    *       May be {@code null} only if the type is not primitive.
+    * @return A call site of type {@code ()T}. Will not be {@code null}
+    * @throws IllegalStateException If this service has not been initialized.
+    * @since 2.0
+    */
+   public <T> CallSite constant(String name, Class<T> type, T defaultValue)
+   {
+      Objects.requireNonNull(name, "property name is null");
+      Objects.requireNonNull(type, "property type is null");
+      if (type == void.class)
+         throw new IllegalArgumentException("Property type may not be void");
+      if (type.isPrimitive() && defaultValue == null)
+         throw new IllegalArgumentException("A default value is required for primitive type " + type);
+
+      return new ConstantPropertySite(this, name, type, defaultValue);
+   }
+
+   /**
+    * @since 2.0
+    */
+   @Override
+   public SortedMap<String, String> subset(String prefix)
+   {
+      Objects.requireNonNull(prefix, "prefix is null");
+      return getSnapshot().subset(prefix);
+   }
+
+   /**
+    * @since 2.0
+    */
+   @Override
+   public ConfigurationSnapshot snapshot()
+   {
+      return getSnapshot().getView(this);
+   }
+
+   /**
+    * Evaluate a property against a specific snapshot, returning the default value if the
+    * property is undefined or cannot be converted. A conversion failure is logged only the
+    * first time it occurs for a snapshot; later reads return the default value immediately.
+    */
+   @SuppressWarnings("unchecked")
+   <T> T getPropertyValue(PropertiesSnapshot current, String name, Class<T> type, T defaultValue)
+   {
+      try
+      {
+         Objects.requireNonNull(name, "property name is null");
+         Objects.requireNonNull(type, "property type is null");
+
+         Object val = convert(current, name, type);
+         if (val instanceof ConversionFailure)
+         {
+            ConversionFailure failure = (ConversionFailure)val;
+            if (failure.markReported())
+               debug.log(Level.WARNING, "Failed processing property value for [" + name + "], returning default. "
+                     + "Further failures are not logged until the configuration changes.", failure.error);
+            return defaultValue;
+         }
+
+         if (val == null)
+            return defaultValue;
+         return (T)val;
+      }
+      catch (Exception pe)
+      {
+         debug.log(Level.WARNING, "Failed processing property value for [" + name + "], returning default", pe);
+         return defaultValue;
+      }
+   }
+
+   /**
+    * Evaluate a property against a specific snapshot, computing the default value if the
+    * property is undefined or cannot be converted. The computed value is retained by the
+    * snapshot for later misses with the same supplier.
+    */
+   <T> T getPropertyValueOrElseGet(PropertiesSnapshot current, String name, Class<T> type, DefaultSupplier<? extends T> defaultSupplier)
+   {
+      Objects.requireNonNull(defaultSupplier, "default supplier is null");
+
+      T val = getPropertyValue(current, name, type, (T)null);
+      if (val != null)
+         return val;
+
+      return current.getSuppliedDefault(name, type, defaultSupplier);
+   }
+
+   /**
+    * Evaluate several properties against a specific snapshot.
+    */
+   PropertyValues getPropertyValues(PropertiesSnapshot current, Map<String, Class<?>> request)
+   {
+      Objects.requireNonNull(request, "request is null");
+
+      int size = request.size();
+      String[] names = request.keySet().toArray(new String[size]);
+      for (String name : names)
+         Objects.requireNonNull(name, "property name is null");
+      Arrays.sort(names);
+
+      Class<?>[] types = new Class<?>[names.length];
+      Object[] values = new Object[names.length];
+      for (int ix = 0; ix < names.length; ix++)
+      {
+         statistics.read();
+         types[ix] = Objects.requireNonNull(request.get(names[ix]), "property type is null");
+         values[ix] = getPropertyValue(current, names[ix], types[ix], null);
+      }
+
+      return new SnapshotPropertyValues(current.getVersion(), names, types, values);
+   }
+
+   /**
+    * Evaluate a property against a specific snapshot.
+    */
+   @SuppressWarnings("unchecked")
+   <T> T getPropertyValue(PropertiesSnapshot current, String name, Class<T> type)
+   {
+      Objects.requireNonNull(name, "property name is null");
+      Objects.requireNonNull(type, "property type is null");
+
+      Object val = convert(current, name, type);
+      // a new exception for each read, so the stack trace is that of the caller; the cached
+      // failure is shared by all reads of the snapshot
+      if (val instanceof ConversionFailure)
+         throw new IllegalStateException("Failed converting property [" + name + "] to " + type.getName(), ((ConversionFailure)val).error);
+
+      return (T)val;
+   }
+
+   /**
+    * Convert a property of a snapshot to the given type, using and updating the conversion
+    * cache of the snapshot.
+    *
+    * @return The converted value, {@code null} if the property is undefined, or a
+    *       {@link ConversionFailure} if the value cannot be converted.
+    */
+   private Object convert(PropertiesSnapshot current, String name, Class<?> type)
+   {
+      Object cached = current.getConverted(name, type);
+      if (cached != null)
+      {
+         if (cached instanceof ConversionFailure)
+            statistics.conversionFailureSuppressed();
+         return cached;
+      }
+
+      String str = current.get(name);
+      if (str == null)
+         return null;
+
+      Object value;
+      try
+      {
+         value = type.isInstance(str) ? str : converters.convert(name, str, type);
+      }
+      catch (RuntimeException e)
+      {
+         statistics.conversionFailed();
+         return current.putFailure(name, type, e);
+      }
+
+      if (value != null)
+         current.putConverted(name, type, value);
+      return value;
+   }
+
+   private byte[] readPropertiesFile(Path filePath)
+   {
+      debug.fine("Loading properties file from: " + filePath);
+
+      try
+      {
+         return PropertiesParser.readAll(filePath);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Unable to load properties file "+filePath, e);
+      }
+   }
+
+   /**
+    * Begin a set of changes to the properties file that will be written and published
+    * together. See {@link PropertiesTransaction}.
+    *
+    * @return A new transaction. Changes have no effect until the transaction is committed.
+    * @since 2.0
+    */
+   public PropertiesTransaction begin()
+   {
+      return new PropertiesTransaction(this);
+   }
+
+   /**
+    * Replace all properties and write them to the properties file. The new values are only
+    * published once the file has been written successfully, unless writes are deferred
+    * (see {@link #PROP_WRITE_BEHIND}).
+    *
+    * @throws IllegalStateException If the properties file could not be written. In this case
+    *       neither the file nor the published values are changed.
+    */
+   // internal method, not part of public api
+   public void setProperties(Map<String, String> newProps)
+   {
+      PropertiesTransaction tx = begin().clear();
+      for (Map.Entry<String, String> entry : newProps.entrySet())
+         tx.put(entry.getKey(), entry.getValue());
+
+      tx.commit();
+   }
+
+   /**
+    * Set or remove a single property and write all properties to the properties file. The new
+    * value is only published once the file has been written successfully, unless writes are
+    * deferred (see {@link #PROP_WRITE_BEHIND}). The value in effect is unchanged if the property
+    * is also defined by a layer that takes precedence over the properties file.
+    *
+    * @param k The property key.
+    * @param v The new value, or {@code null} or blank to remove the property.
+    * @throws IllegalStateException If the properties file could not be written. In this case
+    *       neither the file nor the published values are changed.
+    */
+   // internal method, not part of public api
    public void setProperty(String k, String v)
    {
-      //TODO: allow revert if operation failes
+      boolean isDelete = (v == null || v.trim().isEmpty());
+      PropertiesTransaction tx = begin();
+      if (isDelete)
+         tx.remove(k);
+      else
+         tx.put(k, v);
+
+      tx.commit();
+   }
+
+   /**
+    * Apply the changes collected by a {@link PropertiesTransaction} to the current content of
+    * the properties file. All validation happens before the file is written, so that a failure
+    * leaves both the file and the published values unchanged.
+    *
+    * @param edits The new values by key; a {@code null} value removes the key.
+    * @param replace Whether the edits replace the entire content of the file.
+    */
+   void commitTransaction(Map<String, String> edits, boolean replace)
+   {
       synchronized (this)
       {
+         if (propsDirectory != null)
+            throw new IllegalStateException("Properties loaded from directory [" + propsDirectory.getPath() + "], write is not allowed");
+
          if (propsFile == null)
             throw new IllegalStateException("Properties not specified by file, write is not allowed");
 
-         if (k == null || k.trim().isEmpty())
-            throw new IllegalArgumentException("key is not valid");
+         if (snapshot == null)
+            throw new IllegalStateException("Not initialized");
 
-         boolean isDelete = (v == null || v.trim().isEmpty());
+         Map<String, String> current = sources.getFile();
+         Map<String, String> values = replace
+               ? new HashMap<String, String>(edits.size())
+               : new HashMap<String, String>(current);
+         for (Map.Entry<String, String> entry : edits.entrySet())
+         {
+            if (entry.getValue() == null)
+               values.remove(entry.getKey());
+            else
+               values.put(entry.getKey(), entry.getValue());
+         }
 
-         if (allProps == null)
-            throw new IllegalStateException("Not initialized");
+         // nothing to write; avoids I/O for no-op edits such as repeated saves of the same value
+         if (values.equals(current))
+            return;
 
-         if (isDelete)
-            allProps.remove(k);
-         else
-            allProps.put(k, v);
+         commit(values, replace ? null : new ArrayList<String>(edits.keySet()));
+      }
+   }
+
+   /**
+    * Make new file values effective, either by writing them and then publishing them or, if
+    * writes are deferred, by publishing them and scheduling a write.
+    *
+    * @param updated The new values of the properties file. Ownership of the map passes to this method.
+    * @param changed The keys that may have changed, or {@code null} if any key may have changed.
+    */
+   //@GuardedBy("this")
+   private void commit(Map<String, String> updated, Collection<String> changed)
+   {
+      if (writeBehindMillis <= 0)
+      {
+         writeProperties(updated);
+         publishSources(sources.withFile(updated), changed);
+         return;
+      }
+
+      publishSources(sources.withFile(updated), changed);
+      unwritten = updated;
+      if (pendingWrite == null)
+         pendingWrite = getWriter().schedule(writeTask, writeBehindMillis, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Write any changes that have been published but not yet written to the properties file.
+    * Returns immediately if writes are not deferred (see {@link #PROP_WRITE_BEHIND}).
+    *
+    * @return A future that completes once all changes made before this call are durable. If
+    *       the write fails, the future completes exceptionally and the changes remain pending.
+    * @since 2.0
+    */
+   public Future<Void> flush()
+   {
+      synchronized (this)
+      {
+         if (unwritten != null || pendingWrite != null)
+         {
+            // a write that is already running cannot be cancelled; the flush queues behind it
+            if (pendingWrite != null)
+               pendingWrite.cancel(false);
+            pendingWrite = null;
+            return getWriter().submit(writeTask);
+         }
+      }
 
-         debug.info("Writing properties File: "+propsFile);
-         try (OutputStream out = Files.newOutputStream(propsFile))
+      // run outside the monitor, since writes acquire the write lock first
+      FutureTask<Void> done = new FutureTask<Void>(writeTask);
+      done.run();
+      return done;
+   }
+
+   /**
+    * Write the changes that are pending at the time of the call. The values to write are taken
+    * under the monitor, but serialized and written under {@link #writeLock} only, so that
+    * readers and further changes are not blocked by the write and fsync.
+    */
+   private void writePending()
+   {
+      synchronized (writeLock)
+      {
+         Path file;
+         Map<String, String> values;
+         synchronized (this)
          {
-            allProps.store(out, null);
+            pendingWrite = null;
+            if (unwritten == null)
+               return;
+
+            file = propsFile;
+            values = unwritten;
          }
-         catch (Exception e)
+
+         FileStamp stamp;
+         try
+         {
+            stamp = storeFile(file, values);
+         }
+         catch (RuntimeException e)
+         {
+            debug.log(Level.SEVERE, "Deferred changes remain pending until the next write or flush", e);
+            throw e;
+         }
+
+         synchronized (this)
+         {
+            // if a reload discarded the changes while they were written, the stamp of the
+            // reloaded file is kept, so that the content written here is detected and reloaded
+            if (unwritten == null)
+               return;
+
+            propsStamp = stamp;
+            // changes committed while writing remain pending; a write has been scheduled for them
+            if (unwritten == values)
+               unwritten = null;
+            rebuildSnapshotFile(stamp, values);
+         }
+      }
+   }
+
+   /**
+    * Discard published changes that have not been written because the properties file has
+    * been reloaded. The reloaded file takes precedence.
+    */
+   //@GuardedBy("this")
+   private void discardUnwritten()
+   {
+      if (unwritten == null)
+         return;
+
+      debug.warning("Properties file reloaded before deferred changes were written; changes have been discarded");
+      if (pendingWrite != null)
+         pendingWrite.cancel(false);
+      pendingWrite = null;
+      unwritten = null;
+   }
+
+   //@GuardedBy("this")
+   private ScheduledExecutorService getWriter()
+   {
+      if (writer == null)
+         writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+         {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+               Thread thread = new Thread(r, "Configuration file writer");
+               thread.setDaemon(true);
+               return thread;
+            }
+         });
+
+      return writer;
+   }
+
+   //@GuardedBy("this")
+   private void writeProperties(Map<String, String> updated)
+   {
+      rebuildSnapshotFile(writeFile(updated), updated);
+   }
+
+   /**
+    * Write values to the properties file and record the stamp of the written content.
+    *
+    * @return The stamp of the written content.
+    * @throws IllegalStateException If the file could not be written.
+    */
+   //@GuardedBy("this")
+   private FileStamp writeFile(Map<String, String> updated)
+   {
+      propsStamp = storeFile(propsFile, updated);
+      return propsStamp;
+   }
+
+   /**
+    * Write values to a properties file.
+    *
+    * @return The stamp of the written content.
+    * @throws IllegalStateException If the file could not be written.
+    */
+   private FileStamp storeFile(Path file, Map<String, String> values)
+   {
+      debug.info("Writing properties File: "+file);
+      long start = System.nanoTime();
+      try
+      {
+         Properties props = new Properties();
+         props.putAll(values);
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         props.store(out, null);
+         byte[] content = out.toByteArray();
+         AtomicFileWriter.write(file, content, fsync);
+         statistics.written(System.nanoTime() - start);
+         return FileStamp.of(Files.getLastModifiedTime(file).toMillis(), content);
+      }
+      catch (IOException e)
+      {
+         debug.log(Level.SEVERE, "Failed writing properties file to ["+ file + "]", e);
+         throw new IllegalStateException("Failed writing properties file to ["+ file + "]", e);
+      }
+   }
+
+   /**
+    * Schedule the snapshot file to be rebuilt for values that were just loaded from or written
+    * to the properties file, if snapshot files are enabled.
+    */
+   //@GuardedBy("this")
+   private void rebuildSnapshotFile(final FileStamp stamp, final Map<String, String> values)
+   {
+      if (!useSnapshotFile)
+         return;
+
+      final Path snapshotFile = SnapshotFile.locate(propsFile);
+      getWriter().execute(new Runnable()
+      {
+         @Override
+         public void run()
          {
-            debug.log(Level.SEVERE, "Failed writing properties file to ["+ propsFile + "]", e);
+            writeSnapshotFile(snapshotFile, stamp, values);
          }
+      });
+   }
+
+   private static void writeSnapshotFile(Path snapshotFile, FileStamp stamp, Map<String, String> values)
+   {
+      try
+      {
+         SnapshotFile.write(snapshotFile, stamp, values);
+         debug.fine("Rebuilt snapshot file: " + snapshotFile);
+      }
+      catch (IOException e)
+      {
+         debug.log(Level.WARNING, "Failed writing snapshot file [" + snapshotFile + "]", e);
       }
    }
 
+   /**
+    * @return A read-only view of all property values at the time of the call. The view is
+    *       backed by the published snapshot rather than copied, so it does not reflect later
+    *       changes and obtaining it neither locks nor allocates.
+    */
    // internal method, not part of public api
    public Map<String, String> getAllProps()
    {
-      Map<String,String> props = new HashMap<String, String>();
-      synchronized (this)
+      return getSnapshot().asMap();
+   }
+
+   /**
+    * @return The currently published snapshot. Never {@code null}.
+    * @throws IllegalStateException If this service has not been initialized or has been disposed.
+    */
+   PropertiesSnapshot getSnapshot()
+   {
+      PropertiesSnapshot current = snapshot;
+      if (current == null)
+         throw new IllegalStateException("Not initialized");
+
+      return current;
+   }
+
+   /**
+    * Record a property read made through a view of a snapshot, see {@link SnapshotView}.
+    */
+   void countRead()
+   {
+      statistics.read();
+   }
+
+   /**
+    * @return The built-in default values supplied as DS properties, see {@link #PROP_DEFAULT_PREFIX}.
+    */
+   private static Map<String, String> getDefaults(Map<String, Object> params)
+   {
+      Map<String, String> defaults = new HashMap<String, String>();
+      for (Map.Entry<String, Object> entry : params.entrySet())
       {
-         for (Object o : allProps.keySet()) {
-            String key = String.valueOf(o);
-            props.put(key, allProps.getProperty(key));
-         }
+         String name = entry.getKey();
+         if (name.length() > PROP_DEFAULT_PREFIX.length() && name.startsWith(PROP_DEFAULT_PREFIX) && entry.getValue() != null)
+            defaults.put(name.substring(PROP_DEFAULT_PREFIX.length()), String.valueOf(entry.getValue()));
+      }
+
+      return defaults;
+   }
+
+   /**
+    * @return The values of a DS property that may be supplied either as an array of strings or
+    *       as a single comma-separated string. Blank values are omitted.
+    */
+   private static List<String> getListParam(Map<String, Object> params, String key)
+   {
+      Object value = params.get(key);
+      List<String> values = new ArrayList<String>();
+      if (value == null)
+         return values;
+
+      String[] items = (value instanceof String[]) ? (String[])value : String.valueOf(value).split(",");
+      for (String item : items)
+      {
+         if (item != null && !item.trim().isEmpty())
+            values.add(item.trim());
+      }
+
+      return values;
+   }
+
+   private static boolean getBooleanParam(Map<String, Object> params, String key, boolean defaultValue)
+   {
+      Object value = params.get(key);
+      if (value == null)
+         return defaultValue;
+      if (value instanceof Boolean)
+         return ((Boolean)value).booleanValue();
+
+      return Boolean.parseBoolean(String.valueOf(value).trim());
+   }
+
+   private static long getLongParam(Map<String, Object> params, String key, long defaultValue)
+   {
+      Object value = params.get(key);
+      if (value == null)
+         return defaultValue;
+      if (value instanceof Number)
+         return ((Number)value).longValue();
+
+      try
+      {
+         return Long.parseLong(String.valueOf(value).trim());
+      }
+      catch (NumberFormatException e)
+      {
+         debug.log(Level.WARNING, "Invalid value [" + value + "] for property '" + key + "', using default " + defaultValue, e);
+         return defaultValue;
       }
-      return Collections.unmodifiableMap(props);
    }
 }
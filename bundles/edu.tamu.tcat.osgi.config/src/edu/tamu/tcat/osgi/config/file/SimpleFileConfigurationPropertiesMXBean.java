@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+/**
+ * Management interface registered with the platform MBean server for each active
+ * {@link SimpleFileConfigurationProperties} instance, under the object name
+ * {@code edu.tamu.tcat.osgi.config:type=SimpleFileConfigurationProperties,name=<props.file.propertyName>}.
+ * <p>
+ * Exposes statistics that help determine whether configuration activity contributes to the
+ * load on a node, along with a few maintenance operations.
+ *
+ * @since 2.0
+ */
+public interface SimpleFileConfigurationPropertiesMXBean
+{
+   /**
+    * @return The number of properties currently in effect.
+    */
+   int getKeyCount();
+
+   /**
+    * @return An approximation, in bytes, of the heap occupied by the properties currently in
+    *       effect, excluding converted values.
+    */
+   long getEstimatedHeapBytes();
+
+   /**
+    * @return The duration, in milliseconds, of the most recent load of the properties.
+    */
+   double getLastLoadMillis();
+
+   /**
+    * @return The number of times the properties have been reloaded since activation.
+    */
+   long getReloadCount();
+
+   /**
+    * @return Whether property reads are being counted. Counting is disabled by default.
+    */
+   boolean isReadCountingEnabled();
+
+   /**
+    * Enable or disable counting property reads. Counting imposes a small cost on every read.
+    */
+   void setReadCountingEnabled(boolean enabled);
+
+   /**
+    * @return The number of property values read while read counting was enabled.
+    */
+   long getReadCount();
+
+   /**
+    * @return The number of property values read per second, averaged over the last ten to
+    *       twenty seconds when polled at least every ten seconds, or since read counting was
+    *       enabled if that is more recent. Reading this attribute does not reset the interval.
+    */
+   double getReadRate();
+
+   /**
+    * @return The number of times a property value could not be converted to the requested type.
+    *       Each failure is counted once per snapshot; see {@link #getSuppressedConversionFailureCount()}.
+    */
+   long getConversionFailureCount();
+
+   /**
+    * @return The number of reads that were answered from a previously recorded conversion
+    *       failure, without attempting the conversion or logging the failure again.
+    */
+   long getSuppressedConversionFailureCount();
+
+   /**
+    * @return The number of times the properties file has been written.
+    */
+   long getWriteCount();
+
+   /**
+    * @return The duration, in milliseconds, of the most recent write of the properties file.
+    */
+   double getLastWriteMillis();
+
+   /**
+    * @return The mean duration, in milliseconds, of all writes of the properties file.
+    */
+   double getAverageWriteMillis();
+
+   /**
+    * Reload the properties, see {@link SimpleFileConfigurationProperties#reloadProperties()}.
+    */
+   void reload();
+
+   /**
+    * Write any deferred changes and wait until they are durable, see
+    * {@link SimpleFileConfigurationProperties#flush()}.
+    */
+   void flush();
+
+   /**
+    * @return The keys of all properties currently in effect, in sorted order. Values are not
+    *       exposed since they may be sensitive.
+    */
+   String[] dumpKeys();
+}
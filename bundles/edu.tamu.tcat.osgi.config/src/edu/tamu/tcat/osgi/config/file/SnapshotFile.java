@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A precompiled, binary copy of a properties file that can be loaded without parsing.
+ * <p>
+ * The snapshot file records the size, modification time and checksum of the properties file
+ * it was built from, followed by an entry table: the offsets of the entries in key order, an
+ * open-addressing hash index over the keys, and the entries themselves, each key and value
+ * stored as a length-prefixed sequence of bytes. Strings are encoded one {@code char} at a
+ * time in the one to three byte forms of UTF-8, so that unpaired surrogates, which a
+ * properties file may contain as escapes, survive the round trip. Loading a snapshot copies
+ * the table out of the memory-mapped file in a single bulk operation; entries are decoded
+ * lazily by {@link SnapshotTable}.
+ * <p>
+ * A snapshot file is only used while the size, modification time and checksum of the
+ * properties file still match those recorded.
+ */
+final class SnapshotFile
+{
+   private static final Logger debug = Logger.getLogger("edu.tamu.tcat.osgi.config.file.simple");
+
+   private static final int MAGIC = 0x54434346;   // "TCCF"
+   private static final int FORMAT_VERSION = 2;
+   private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 4;
+
+   private final FileStamp stamp;
+   private final Map<String, String> values;
+
+   private SnapshotFile(FileStamp stamp, Map<String, String> values)
+   {
+      this.stamp = stamp;
+      this.values = values;
+   }
+
+   /**
+    * @return The location of the snapshot file for the given properties file.
+    */
+   static Path locate(Path propsFile)
+   {
+      return propsFile.resolveSibling(propsFile.getFileName() + ".snapshot");
+   }
+
+   /**
+    * @return The stamp of the properties file this snapshot was built from.
+    */
+   FileStamp getStamp()
+   {
+      return stamp;
+   }
+
+   /**
+    * @return A read-only map of the values in this snapshot.
+    */
+   Map<String, String> getValues()
+   {
+      return values;
+   }
+
+   /**
+    * Load a snapshot file, provided that it is still valid for the properties file.
+    *
+    * @param snapshotFile The snapshot file to read.
+    * @param propsFile The properties file the snapshot must describe.
+    * @return The snapshot, or {@code null} if the snapshot file does not exist, is out of date
+    *       or cannot be read.
+    */
+   static SnapshotFile read(Path snapshotFile, Path propsFile)
+   {
+      if (!Files.isRegularFile(snapshotFile))
+         return null;
+
+      try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ))
+      {
+         MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         if (mapped.remaining() < HEADER_SIZE || mapped.getInt() != MAGIC || mapped.getInt() != FORMAT_VERSION)
+         {
+            debug.fine("Ignoring unrecognized snapshot file [" + snapshotFile + "]");
+            return null;
+         }
+
+         FileStamp stamp = new FileStamp(mapped.getLong(), mapped.getLong(), mapped.getLong());
+         if (stamp.getSize() != Files.size(propsFile) || stamp.getLastModified() != Files.getLastModifiedTime(propsFile).toMillis())
+         {
+            debug.fine("Snapshot file [" + snapshotFile + "] is out of date");
+            return null;
+         }
+
+         // the stamp is trusted as the state of the properties file, so size and modification
+         // time are not enough; content may change without either of them changing
+         if (!stamp.equals(FileStamp.read(propsFile)))
+         {
+            debug.fine("Snapshot file [" + snapshotFile + "] does not match the content of [" + propsFile + "]");
+            return null;
+         }
+
+         int count = mapped.getInt();
+         int slots = mapped.getInt();
+
+         // copy rather than retain the mapping, so the snapshot file may be replaced at any time
+         byte[] table = new byte[mapped.remaining()];
+         mapped.get(table);
+
+         SnapshotTable values = new SnapshotTable(ByteBuffer.wrap(table), count, slots);
+         return new SnapshotFile(stamp, values);
+      }
+      catch (IOException | BufferUnderflowException | IllegalArgumentException e)
+      {
+         debug.log(Level.WARNING, "Failed reading snapshot file [" + snapshotFile + "]", e);
+         return null;
+      }
+   }
+
+   /**
+    * Write a snapshot file describing the values loaded from a properties file.
+    *
+    * @param snapshotFile The snapshot file to write.
+    * @param stamp The stamp of the properties file at the time the values were loaded.
+    * @param values The values loaded from the properties file.
+    * @throws IOException If the snapshot could not be written.
+    */
+   static void write(Path snapshotFile, FileStamp stamp, Map<String, String> values) throws IOException
+   {
+      String[] keys = values.keySet().toArray(new String[values.size()]);
+      Arrays.sort(keys);
+
+      // keep the hash index at most half full
+      int slots = Integer.highestOneBit(Math.max(1, keys.length) * 2 - 1) << 1;
+      int[] index = new int[2 * slots];
+      int[] offsets = new int[keys.length];
+
+      ByteArrayOutputStream data = new ByteArrayOutputStream(keys.length * 64);
+      DataOutputStream entries = new DataOutputStream(data);
+      for (int i = 0; i < keys.length; i++)
+      {
+         offsets[i] = entries.size();
+         writeString(entries, keys[i]);
+         writeString(entries, values.get(keys[i]));
+
+         int hash = keys[i].hashCode();
+         int slot = hash & (slots - 1);
+         while (index[2 * slot + 1] != 0)
+            slot = (slot + 1) & (slots - 1);
+         index[2 * slot] = hash;
+         index[2 * slot + 1] = i + 1;
+      }
+      entries.flush();
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + 4 * offsets.length + 4 * index.length + data.size());
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(stamp.getSize());
+      out.writeLong(stamp.getLastModified());
+      out.writeLong(stamp.getChecksum());
+      out.writeInt(keys.length);
+      out.writeInt(slots);
+      for (int offset : offsets)
+         out.writeInt(offset);
+      for (int ref : index)
+         out.writeInt(ref);
+      data.writeTo(out);
+      out.flush();
+
+      AtomicFileWriter.write(snapshotFile, bytes.toByteArray(), false);
+   }
+
+   private static void writeString(DataOutputStream out, String str) throws IOException
+   {
+      int len = str.length();
+      int encodedLength = len;
+      for (int i = 0; i < len; i++)
+      {
+         char c = str.charAt(i);
+         if (c >= 0x800)
+            encodedLength += 2;
+         else if (c >= 0x80)
+            encodedLength += 1;
+      }
+
+      byte[] encoded = new byte[encodedLength];
+      int pos = 0;
+      for (int i = 0; i < len; i++)
+      {
+         char c = str.charAt(i);
+         if (c < 0x80)
+         {
+            encoded[pos++] = (byte)c;
+         }
+         else if (c < 0x800)
+         {
+            encoded[pos++] = (byte)(0xC0 | (c >> 6));
+            encoded[pos++] = (byte)(0x80 | (c & 0x3F));
+         }
+         else
+         {
+            encoded[pos++] = (byte)(0xE0 | (c >> 12));
+            encoded[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+            encoded[pos++] = (byte)(0x80 | (c & 0x3F));
+         }
+      }
+
+      out.writeInt(encoded.length);
+      out.write(encoded);
+   }
+
+   /**
+    * Decode a string written by {@link #writeString(DataOutputStream, String)}. Malformed
+    * sequences decode as U+FFFD.
+    *
+    * @param bytes The encoded bytes.
+    * @param offset The offset of the first encoded byte.
+    * @param length The number of encoded bytes.
+    * @return The decoded string.
+    */
+   static String decodeString(byte[] bytes, int offset, int length)
+   {
+      char[] chars = new char[length];
+      int count = 0;
+      int pos = offset;
+      int end = offset + length;
+      while (pos < end)
+      {
+         int b = bytes[pos++] & 0xFF;
+         if (b < 0x80)
+         {
+            chars[count++] = (char)b;
+         }
+         else if ((b & 0xE0) == 0xC0 && pos < end && isContinuation(bytes[pos]))
+         {
+            chars[count++] = (char)(((b & 0x1F) << 6) | (bytes[pos++] & 0x3F));
+         }
+         else if ((b & 0xF0) == 0xE0 && pos + 1 < end && isContinuation(bytes[pos]) && isContinuation(bytes[pos + 1]))
+         {
+            chars[count++] = (char)(((b & 0x0F) << 12) | ((bytes[pos] & 0x3F) << 6) | (bytes[pos + 1] & 0x3F));
+            pos += 2;
+         }
+         else
+         {
+            chars[count++] = '\uFFFD';
+         }
+      }
+      return new String(chars, 0, count);
+   }
+
+   private static boolean isContinuation(byte b)
+   {
+      return (b & 0xC0) == 0x80;
+   }
+}
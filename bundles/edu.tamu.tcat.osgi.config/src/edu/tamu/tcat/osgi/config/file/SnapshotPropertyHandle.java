@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.tamu.tcat.osgi.config.PropertyHandle;
+
+/**
+ * A {@link PropertyHandle} that retains the value resolved against a particular
+ * {@link PropertiesSnapshot} and resolves it again only once a different snapshot has been
+ * published.
+ * <p>
+ * The resolved value and its primitive forms are held together in an immutable
+ * {@link Resolved} instance, so that readers on other threads always observe a consistent set
+ * of fields. Reading an up-to-date handle costs two volatile reads and a reference comparison.
+ */
+final class SnapshotPropertyHandle<T> implements PropertyHandle<T>
+{
+   private final SimpleFileConfigurationProperties props;
+   private final String name;
+   private final Class<T> type;
+   private final T defaultValue;
+
+   private volatile Resolved<T> resolved;
+
+   SnapshotPropertyHandle(SimpleFileConfigurationProperties props, String name, Class<T> type, T defaultValue)
+   {
+      this.props = props;
+      this.name = name;
+      this.type = type;
+      this.defaultValue = defaultValue;
+   }
+
+   @Override
+   public String getName()
+   {
+      return name;
+   }
+
+   @Override
+   public Class<T> getType()
+   {
+      return type;
+   }
+
+   @Override
+   public T get()
+   {
+      return current().value;
+   }
+
+   @Override
+   public int getInt()
+   {
+      Resolved<T> r = current();
+      if (!r.numeric)
+         throw notA("numeric");
+      if (!r.exactInt)
+         throw new IllegalStateException("Property [" + name + "] value [" + r.value + "] cannot be represented as an int");
+      return (int)r.longValue;
+   }
+
+   @Override
+   public long getLong()
+   {
+      Resolved<T> r = current();
+      if (!r.numeric)
+         throw notA("numeric");
+      if (!r.exactLong)
+         throw new IllegalStateException("Property [" + name + "] value [" + r.value + "] cannot be represented as a long");
+      return r.longValue;
+   }
+
+   @Override
+   public double getDouble()
+   {
+      Resolved<T> r = current();
+      if (!r.numeric)
+         throw notA("numeric");
+      return r.doubleValue;
+   }
+
+   @Override
+   public boolean getBoolean()
+   {
+      Resolved<T> r = current();
+      if (!r.bool)
+         throw notA("boolean");
+      return r.booleanValue;
+   }
+
+   private Resolved<T> current()
+   {
+      PropertiesSnapshot snapshot = props.getSnapshot();
+      Resolved<T> r = resolved;
+      if (r == null || r.snapshot != snapshot)
+      {
+         r = new Resolved<T>(snapshot, props.getPropertyValue(snapshot, name, type, defaultValue));
+         resolved = r;
+      }
+      return r;
+   }
+
+   private IllegalStateException notA(String kind)
+   {
+      return new IllegalStateException("Property [" + name + "] does not have a " + kind + " value as " + type.getCanonicalName());
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PropertyHandle [" + name + " : " + type.getSimpleName() + "]";
+   }
+
+   private static final class Resolved<T>
+   {
+      /** The smallest double beyond the range of {@code long}, 2<sup>63</sup>. */
+      private static final double LONG_LIMIT = 9223372036854775808.0;
+
+      final PropertiesSnapshot snapshot;
+      final T value;
+      final boolean numeric;
+      final long longValue;
+      final double doubleValue;
+      /** Whether the value is integral and within the range of {@code long}. */
+      final boolean exactLong;
+      /** Whether the value is integral and within the range of {@code int}. */
+      final boolean exactInt;
+      final boolean bool;
+      final boolean booleanValue;
+
+      Resolved(PropertiesSnapshot snapshot, T value)
+      {
+         this.snapshot = snapshot;
+         this.value = value;
+         this.numeric = value instanceof Number;
+         this.longValue = numeric ? ((Number)value).longValue() : 0;
+         this.doubleValue = numeric ? ((Number)value).doubleValue() : 0;
+         this.exactLong = numeric && isExactLong((Number)value);
+         this.exactInt = exactLong && longValue == (int)longValue;
+         this.bool = value instanceof Boolean;
+         this.booleanValue = bool && ((Boolean)value).booleanValue();
+      }
+
+      /**
+       * @return {@code true} if {@link Number#longValue()} returns the value without rounding,
+       *       truncation or overflow.
+       */
+      private static boolean isExactLong(Number value)
+      {
+         if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+               || value instanceof AtomicLong || value instanceof AtomicInteger)
+            return true;
+
+         if (value instanceof BigInteger)
+            return ((BigInteger)value).bitLength() < 64;
+
+         if (value instanceof BigDecimal)
+         {
+            BigDecimal decimal = (BigDecimal)value;
+            // zero is tested separately, since stripping zeros does not reduce its scale on Java 7
+            return decimal.signum() == 0 || decimal.stripTrailingZeros().scale() <= 0 && decimal.toBigInteger().bitLength() < 64;
+         }
+
+         double d = value.doubleValue();
+         return d == Math.rint(d) && d >= -LONG_LIMIT && d < LONG_LIMIT;
+      }
+   }
+}
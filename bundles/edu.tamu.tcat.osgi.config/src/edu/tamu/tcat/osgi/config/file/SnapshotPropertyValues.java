@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.Arrays;
+
+import edu.tamu.tcat.osgi.config.PropertyValues;
+
+/**
+ * {@link PropertyValues} held in parallel arrays, sorted by property name so that values can
+ * be found by binary search without hashing or per-entry objects.
+ */
+final class SnapshotPropertyValues implements PropertyValues
+{
+   private final long version;
+   private final String[] names;
+   private final Class<?>[] types;
+   private final Object[] values;
+
+   /**
+    * @param version The version of the snapshot the values were read from.
+    * @param names The property names, in sorted order.
+    * @param types The requested type of each property.
+    * @param values The converted value of each property, or {@code null}.
+    */
+   SnapshotPropertyValues(long version, String[] names, Class<?>[] types, Object[] values)
+   {
+      this.version = version;
+      this.names = names;
+      this.types = types;
+      this.values = values;
+   }
+
+   @Override
+   public long getVersion()
+   {
+      return version;
+   }
+
+   @Override
+   public int size()
+   {
+      return names.length;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public <T> T get(String name, Class<T> type)
+   {
+      return (T)values[indexOf(name, type)];
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public <T> T get(String name, Class<T> type, T defaultValue)
+   {
+      Object value = values[indexOf(name, type)];
+      return value == null ? defaultValue : (T)value;
+   }
+
+   private int indexOf(String name, Class<?> type)
+   {
+      int ix = Arrays.binarySearch(names, name);
+      if (ix < 0)
+         throw new IllegalArgumentException("Property [" + name + "] was not requested");
+      if (types[ix] != type)
+         throw new IllegalArgumentException("Property [" + name + "] was requested as " + types[ix].getName() + ", not " + type.getName());
+
+      return ix;
+   }
+
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder("PropertyValues [version=").append(version).append(", {");
+      for (int ix = 0; ix < names.length; ix++)
+         sb.append(ix == 0 ? "" : ", ").append(names[ix]).append('=').append(values[ix]);
+      return sb.append("}]").toString();
+   }
+}
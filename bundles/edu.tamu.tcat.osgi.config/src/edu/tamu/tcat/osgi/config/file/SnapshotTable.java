@@ -0,0 +1,237 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only map over the entry table of a {@link SnapshotFile}.
+ * <p>
+ * Keys and values are decoded from the table lazily, the first time each is accessed, so that
+ * a large snapshot can be installed without first materializing every entry. Lookups use the
+ * hash index stored in the table and compare the requested key against the encoded key bytes
+ * without decoding them. Since entries are stored in key order, the table also serves as its
+ * own {@link SortedIndex}.
+ */
+final class SnapshotTable extends AbstractMap<String, String> implements SortedIndex
+{
+   private final ByteBuffer table;
+   private final int count;
+   private final int offsetsBase;
+   private final int slotsBase;
+   private final int slotMask;
+   private final int dataBase;
+
+   // decoded strings are immutable and so safe to publish without synchronization;
+   // a racing thread may at worst decode the same entry twice
+   private final String[] keys;
+   private final String[] values;
+
+   private Set<Map.Entry<String, String>> entrySet;
+
+   /**
+    * @param table The table, positioned at the entry offsets.
+    * @param count The number of entries.
+    * @param slots The number of slots in the hash index. Must be a power of two.
+    */
+   SnapshotTable(ByteBuffer table, int count, int slots)
+   {
+      this.table = table;
+      this.count = count;
+      this.offsetsBase = table.position();
+      this.slotsBase = offsetsBase + 4 * count;
+      this.slotMask = slots - 1;
+      this.dataBase = slotsBase + 8 * slots;
+      this.keys = new String[count];
+      this.values = new String[count];
+
+      if (Integer.bitCount(slots) != 1 || dataBase > table.limit())
+         throw new IllegalArgumentException("Malformed snapshot table");
+   }
+
+   @Override
+   public int size()
+   {
+      return count;
+   }
+
+   /**
+    * @return An approximation of the heap occupied by this table: the encoded table itself
+    *       and the strings that have been decoded so far.
+    */
+   long estimateHeapBytes()
+   {
+      long bytes = table.capacity() + 2 * (16 + 4L * count);
+      for (int ix = 0; ix < count; ix++)
+      {
+         String key = keys[ix];
+         if (key != null)
+            bytes += PropertiesSnapshot.estimateHeapBytes(key);
+         String value = values[ix];
+         if (value != null)
+            bytes += PropertiesSnapshot.estimateHeapBytes(value);
+      }
+      return bytes;
+   }
+
+   @Override
+   public boolean containsKey(Object key)
+   {
+      return indexOf(key) >= 0;
+   }
+
+   @Override
+   public String get(Object key)
+   {
+      int ix = indexOf(key);
+      return ix < 0 ? null : valueAt(ix);
+   }
+
+   private int indexOf(Object key)
+   {
+      if (!(key instanceof String))
+         return -1;
+
+      String name = (String)key;
+      int hash = name.hashCode();
+      int slot = hash & slotMask;
+      while (true)
+      {
+         int base = slotsBase + 8 * slot;
+         int ref = table.getInt(base + 4);
+         if (ref == 0)
+            return -1;
+
+         int ix = ref - 1;
+         if (table.getInt(base) == hash && keyEquals(ix, name))
+            return ix;
+
+         slot = (slot + 1) & slotMask;
+      }
+   }
+
+   private boolean keyEquals(int ix, String name)
+   {
+      int pos = entryOffset(ix);
+      int len = table.getInt(pos);
+      pos += 4;
+
+      // compare ASCII directly against the encoded bytes; anything else is decoded
+      if (len != name.length())
+         return len > name.length() && keyAt(ix).equals(name);
+
+      for (int i = 0; i < len; i++)
+      {
+         char c = name.charAt(i);
+         if (c >= 0x80)
+            return keyAt(ix).equals(name);
+         if (table.get(pos + i) != (byte)c)
+            return false;
+      }
+      return true;
+   }
+
+   private int entryOffset(int ix)
+   {
+      return dataBase + table.getInt(offsetsBase + 4 * ix);
+   }
+
+   @Override
+   public String keyAt(int ix)
+   {
+      String key = keys[ix];
+      if (key == null)
+      {
+         key = decode(entryOffset(ix));
+         keys[ix] = key;
+      }
+      return key;
+   }
+
+   @Override
+   public String valueAt(int ix)
+   {
+      String value = values[ix];
+      if (value == null)
+      {
+         int pos = entryOffset(ix);
+         value = decode(pos + 4 + table.getInt(pos));
+         values[ix] = value;
+      }
+      return value;
+   }
+
+   private String decode(int pos)
+   {
+      int len = table.getInt(pos);
+      return SnapshotFile.decodeString(table.array(), table.arrayOffset() + pos + 4, len);
+   }
+
+   @Override
+   public Set<Map.Entry<String, String>> entrySet()
+   {
+      if (entrySet == null)
+         entrySet = new EntrySet();
+      return entrySet;
+   }
+
+   private final class EntrySet extends AbstractSet<Map.Entry<String, String>>
+   {
+      @Override
+      public int size()
+      {
+         return count;
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, String>> iterator()
+      {
+         return new Iterator<Map.Entry<String, String>>()
+         {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+               return next < count;
+            }
+
+            @Override
+            public Map.Entry<String, String> next()
+            {
+               if (next >= count)
+                  throw new NoSuchElementException();
+
+               int ix = next++;
+               return new SimpleImmutableEntry<String, String>(keyAt(ix), valueAt(ix));
+            }
+
+            @Override
+            public void remove()
+            {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+   }
+}
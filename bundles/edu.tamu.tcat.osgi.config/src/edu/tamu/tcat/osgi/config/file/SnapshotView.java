@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+
+import edu.tamu.tcat.osgi.config.ConfigurationSnapshot;
+import edu.tamu.tcat.osgi.config.DefaultSupplier;
+import edu.tamu.tcat.osgi.config.PropertyValues;
+
+/**
+ * A {@link ConfigurationSnapshot} that evaluates properties against a single
+ * {@link PropertiesSnapshot}, sharing its conversion cache with the owning service.
+ * <p>
+ * A view is created at most once per snapshot, so that taking a snapshot of the configuration
+ * does not allocate.
+ */
+final class SnapshotView implements ConfigurationSnapshot
+{
+   private final SimpleFileConfigurationProperties props;
+   private final PropertiesSnapshot snapshot;
+
+   SnapshotView(SimpleFileConfigurationProperties props, PropertiesSnapshot snapshot)
+   {
+      this.props = props;
+      this.snapshot = snapshot;
+   }
+
+   @Override
+   public long getVersion()
+   {
+      return snapshot.getVersion();
+   }
+
+   @Override
+   public <T> T getPropertyValue(String name, Class<T> type)
+   {
+      props.countRead();
+      return props.getPropertyValue(snapshot, name, type);
+   }
+
+   @Override
+   public <T> T getPropertyValue(String name, Class<T> type, T defaultValue)
+   {
+      props.countRead();
+      return props.getPropertyValue(snapshot, name, type, defaultValue);
+   }
+
+   @Override
+   public <T> T getPropertyValueOrElseGet(String name, Class<T> type, DefaultSupplier<? extends T> defaultSupplier)
+   {
+      props.countRead();
+      return props.getPropertyValueOrElseGet(snapshot, name, type, defaultSupplier);
+   }
+
+   @Override
+   public PropertyValues getPropertyValues(Map<String, Class<?>> request)
+   {
+      return props.getPropertyValues(snapshot, request);
+   }
+
+   @Override
+   public SortedMap<String, String> subset(String prefix)
+   {
+      Objects.requireNonNull(prefix, "prefix is null");
+      return snapshot.subset(prefix);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ConfigurationSnapshot [version=" + snapshot.getVersion() + ", size=" + snapshot.size() + "]";
+   }
+}
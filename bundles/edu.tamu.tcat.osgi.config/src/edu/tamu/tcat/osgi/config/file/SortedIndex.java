@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+/**
+ * Positional access to a set of property entries in ascending order of key.
+ */
+interface SortedIndex
+{
+   /**
+    * @return The number of entries.
+    */
+   int size();
+
+   /**
+    * @return The key at the given position.
+    */
+   String keyAt(int ix);
+
+   /**
+    * @return The value at the given position.
+    */
+   String valueAt(int ix);
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.file;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * A read-only {@link SortedMap} view over a contiguous range of a {@link SortedIndex}.
+ * <p>
+ * Views are created without copying: iteration walks the underlying index, and
+ * {@link #subMap(String, String)}, {@link #headMap(String)} and {@link #tailMap(String)}
+ * locate their bounds by binary search. Individual lookups are delegated to the hashed map
+ * the index was built from. Keys given to the range methods that fall outside this view are
+ * clamped to it rather than rejected.
+ */
+final class SortedIndexMap extends AbstractMap<String, String> implements SortedMap<String, String>
+{
+   private final SortedIndex index;
+   private final Map<String, String> lookup;
+   private final int from;
+   private final int to;
+
+   private Set<Map.Entry<String, String>> entrySet;
+
+   /**
+    * @param index The sorted entries.
+    * @param lookup A map holding the same entries as the index, used for lookups by key.
+    * @param from The position of the first entry in the view.
+    * @param to The position after the last entry in the view.
+    */
+   SortedIndexMap(SortedIndex index, Map<String, String> lookup, int from, int to)
+   {
+      this.index = index;
+      this.lookup = lookup;
+      this.from = from;
+      this.to = to;
+   }
+
+   /**
+    * @return A view of all entries whose keys begin with the given prefix.
+    */
+   static SortedIndexMap withPrefix(SortedIndex index, Map<String, String> lookup, String prefix)
+   {
+      int lo = lowerBound(index, 0, index.size(), prefix);
+      int hi = lo;
+      int end = index.size();
+
+      // keys beginning with the prefix are contiguous from lo; find the first that does not
+      while (hi < end)
+      {
+         int mid = (hi + end) >>> 1;
+         if (index.keyAt(mid).startsWith(prefix))
+            hi = mid + 1;
+         else
+            end = mid;
+      }
+
+      return new SortedIndexMap(index, lookup, lo, hi);
+   }
+
+   /**
+    * @return The position of the first key in the range not less than the given key.
+    */
+   private static int lowerBound(SortedIndex index, int from, int to, String key)
+   {
+      int lo = from;
+      int hi = to;
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (index.keyAt(mid).compareTo(key) < 0)
+            lo = mid + 1;
+         else
+            hi = mid;
+      }
+      return lo;
+   }
+
+   @Override
+   public int size()
+   {
+      return to - from;
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      return from == to;
+   }
+
+   @Override
+   public boolean containsKey(Object key)
+   {
+      return get(key) != null;
+   }
+
+   @Override
+   public String get(Object key)
+   {
+      if (from == to || !(key instanceof String))
+         return null;
+
+      String k = (String)key;
+      if (k.compareTo(index.keyAt(from)) < 0 || k.compareTo(index.keyAt(to - 1)) > 0)
+         return null;
+
+      return lookup.get(k);
+   }
+
+   @Override
+   public Comparator<? super String> comparator()
+   {
+      return null;
+   }
+
+   @Override
+   public SortedMap<String, String> subMap(String fromKey, String toKey)
+   {
+      Objects.requireNonNull(fromKey, "fromKey is null");
+      Objects.requireNonNull(toKey, "toKey is null");
+      if (fromKey.compareTo(toKey) > 0)
+         throw new IllegalArgumentException("fromKey > toKey");
+
+      int lo = lowerBound(index, from, to, fromKey);
+      return new SortedIndexMap(index, lookup, lo, lowerBound(index, lo, to, toKey));
+   }
+
+   @Override
+   public SortedMap<String, String> headMap(String toKey)
+   {
+      Objects.requireNonNull(toKey, "toKey is null");
+      return new SortedIndexMap(index, lookup, from, lowerBound(index, from, to, toKey));
+   }
+
+   @Override
+   public SortedMap<String, String> tailMap(String fromKey)
+   {
+      Objects.requireNonNull(fromKey, "fromKey is null");
+      return new SortedIndexMap(index, lookup, lowerBound(index, from, to, fromKey), to);
+   }
+
+   @Override
+   public String firstKey()
+   {
+      if (from == to)
+         throw new NoSuchElementException();
+      return index.keyAt(from);
+   }
+
+   @Override
+   public String lastKey()
+   {
+      if (from == to)
+         throw new NoSuchElementException();
+      return index.keyAt(to - 1);
+   }
+
+   @Override
+   public Set<Map.Entry<String, String>> entrySet()
+   {
+      if (entrySet == null)
+         entrySet = new EntrySet();
+      return entrySet;
+   }
+
+   private final class EntrySet extends AbstractSet<Map.Entry<String, String>>
+   {
+      @Override
+      public int size()
+      {
+         return to - from;
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, String>> iterator()
+      {
+         return new Iterator<Map.Entry<String, String>>()
+         {
+            private int next = from;
+
+            @Override
+            public boolean hasNext()
+            {
+               return next < to;
+            }
+
+            @Override
+            public Map.Entry<String, String> next()
+            {
+               if (next >= to)
+                  throw new NoSuchElementException();
+
+               int ix = next++;
+               return new SimpleImmutableEntry<String, String>(index.keyAt(ix), index.valueAt(ix));
+            }
+
+            @Override
+            public void remove()
+            {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+   }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.processor;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * A configuration interface and the properties bound to its methods.
+ */
+final class ConfigInterface
+{
+   private final TypeElement iface;
+   private final List<ConfigProperty> properties;
+
+   ConfigInterface(TypeElement iface, List<ConfigProperty> properties)
+   {
+      this.iface = iface;
+      this.properties = Collections.unmodifiableList(properties);
+   }
+
+   TypeElement getInterface()
+   {
+      return iface;
+   }
+
+   List<ConfigProperty> getProperties()
+   {
+      return properties;
+   }
+
+   boolean isPublic()
+   {
+      return iface.getModifiers().contains(Modifier.PUBLIC);
+   }
+
+   /**
+    * @return The name of the package of the interface, or the empty string for the unnamed package.
+    */
+   String getPackageName()
+   {
+      Element e = iface;
+      while (e.getKind() != ElementKind.PACKAGE)
+         e = e.getEnclosingElement();
+
+      return ((PackageElement)e).getQualifiedName().toString();
+   }
+
+   /**
+    * @return The simple name of the generated class, formed from the names of the interface and
+    *       any enclosing types, such as {@code Config_Outer_DbConfig}.
+    */
+   String getImplName()
+   {
+      StringBuilder sb = new StringBuilder(iface.getSimpleName());
+      for (Element e = iface.getEnclosingElement(); e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement())
+         sb.insert(0, '_').insert(0, e.getSimpleName());
+
+      return sb.insert(0, ConfigKeyProcessor.PREFIX).toString();
+   }
+
+   String getQualifiedImplName()
+   {
+      String pkg = getPackageName();
+      return pkg.isEmpty() ? getImplName() : pkg + "." + getImplName();
+   }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Writes the implementation of a {@link ConfigInterface}.
+ * <p>
+ * The generated class holds the converted values of all properties in the fields of an
+ * immutable nested {@code Values} object, tagged with the version of the configuration
+ * snapshot they were read from. Each method compares that version with the version of the
+ * current snapshot and, if unchanged, returns the value held in its field. Otherwise all
+ * values are read again from the current snapshot and published together in a new
+ * {@code Values} object, so that values returned by different methods are always consistent.
+ * <p>
+ * The generated code is compatible with Java 7 and refers to all types by their qualified
+ * names, so it needs no imports.
+ */
+final class ConfigInterfaceWriter
+{
+   private static final String CONFIG_PROPERTIES = "edu.tamu.tcat.osgi.config.ConfigurationProperties";
+   private static final String CONFIG_SNAPSHOT = "edu.tamu.tcat.osgi.config.ConfigurationSnapshot";
+
+   private final ConfigInterface model;
+
+   /** Name of the field holding the snapshot version; must not clash with a property field. */
+   private final String versionField;
+
+   /** Name of the method returning the current values; must not clash with a property method. */
+   private final String currentMethod;
+
+   ConfigInterfaceWriter(ConfigInterface model)
+   {
+      this.model = model;
+
+      Set<String> names = new HashSet<>();
+      for (ConfigProperty property : model.getProperties())
+         names.add(property.getMethodName());
+
+      this.versionField = unique("version", names);
+      this.currentMethod = unique("current", names);
+   }
+
+   private static String unique(String name, Set<String> taken)
+   {
+      String candidate = name;
+      while (taken.contains(candidate))
+         candidate = candidate + "_";
+      return candidate;
+   }
+
+   void write(Writer out) throws IOException
+   {
+      String ifaceName = model.getInterface().getQualifiedName().toString();
+      String implName = model.getImplName();
+
+      StringBuilder sb = new StringBuilder();
+      sb.append("// Generated by ").append(ConfigKeyProcessor.class.getName()).append(" from ").append(ifaceName).append(". Do not edit.\n");
+      if (!model.getPackageName().isEmpty())
+         sb.append("package ").append(model.getPackageName()).append(";\n");
+      sb.append("\n");
+      sb.append("/**\n");
+      sb.append(" * An implementation of {@link ").append(ifaceName).append("} backed by a {@link ").append(CONFIG_PROPERTIES).append("}.\n");
+      sb.append(" */\n");
+      sb.append(model.isPublic() ? "public " : "").append("final class ").append(implName).append(" implements ").append(ifaceName).append("\n");
+      sb.append("{\n");
+      sb.append("   private final ").append(CONFIG_PROPERTIES).append(" props;\n");
+      sb.append("   private volatile Values values;\n");
+      sb.append("\n");
+      sb.append("   public ").append(implName).append("(").append(CONFIG_PROPERTIES).append(" props)\n");
+      sb.append("   {\n");
+      sb.append("      if (props == null)\n");
+      sb.append("         throw new NullPointerException(\"configuration properties are null\");\n");
+      sb.append("      this.props = props;\n");
+      sb.append("   }\n");
+      sb.append("\n");
+      sb.append("   private Values ").append(currentMethod).append("()\n");
+      sb.append("   {\n");
+      sb.append("      ").append(CONFIG_SNAPSHOT).append(" snapshot = props.snapshot();\n");
+      sb.append("      Values v = values;\n");
+      sb.append("      if (v == null || v.").append(versionField).append(" != snapshot.getVersion())\n");
+      sb.append("      {\n");
+      sb.append("         // benign race: concurrent callers may each read equivalent values\n");
+      sb.append("         v = new Values(snapshot);\n");
+      sb.append("         values = v;\n");
+      sb.append("      }\n");
+      sb.append("      return v;\n");
+      sb.append("   }\n");
+
+      for (ConfigProperty property : model.getProperties())
+         writeMethod(sb, property);
+
+      sb.append("\n");
+      sb.append("   private static final class Values\n");
+      sb.append("   {\n");
+      sb.append("      final long ").append(versionField).append(";\n");
+      for (ConfigProperty property : model.getProperties())
+         sb.append("      final ").append(getFieldType(property)).append(" ").append(property.getMethodName()).append(";\n");
+      sb.append("\n");
+      sb.append("      Values(").append(CONFIG_SNAPSHOT).append(" snapshot)\n");
+      sb.append("      {\n");
+      sb.append("         this.").append(versionField).append(" = snapshot.getVersion();\n");
+      for (ConfigProperty property : model.getProperties())
+         writeAssignment(sb, property);
+      sb.append("      }\n");
+      sb.append("   }\n");
+      sb.append("}\n");
+
+      out.write(sb.toString());
+   }
+
+   private void writeMethod(StringBuilder sb, ConfigProperty property)
+   {
+      String name = property.getMethodName();
+      sb.append("\n");
+      sb.append("   @Override\n");
+      sb.append("   public ").append(getReturnType(property)).append(" ").append(name).append("()\n");
+      sb.append("   {\n");
+      if (property.isPrimitive() && property.getDefaultLiteral() == null)
+      {
+         sb.append("      ").append(property.getValueClass()).append(" value = ").append(currentMethod).append("().").append(name).append(";\n");
+         sb.append("      if (value == null)\n");
+         sb.append("         throw new IllegalStateException(").append(Literals.quote("Property [" + property.getKey() + "] is undefined or cannot be converted to " + getReturnType(property))).append(");\n");
+         sb.append("      return value.").append(getReturnType(property)).append("Value();\n");
+      }
+      else
+      {
+         sb.append("      return ").append(currentMethod).append("().").append(name).append(";\n");
+      }
+      sb.append("   }\n");
+   }
+
+   private static void writeAssignment(StringBuilder sb, ConfigProperty property)
+   {
+      String defaultValue = property.getDefaultLiteral();
+      sb.append("         this.").append(property.getMethodName()).append(" = snapshot.getPropertyValue(")
+        .append(Literals.quote(property.getKey())).append(", ")
+        .append(property.getValueClass()).append(".class, ")
+        .append(defaultValue == null ? "null" : defaultValue).append(")");
+
+      // the default value is never null, so the result may be unboxed
+      if (property.isPrimitive() && defaultValue != null)
+         sb.append(".").append(getReturnType(property)).append("Value()");
+      sb.append(";\n");
+   }
+
+   /**
+    * @return The type returned by the method, as written in source.
+    */
+   private static String getReturnType(ConfigProperty property)
+   {
+      if (property.isPrimitive())
+         return property.getType().getKind().name().toLowerCase(Locale.ENGLISH);
+      return property.getValueClass();
+   }
+
+   /**
+    * @return The type of the field holding the value; primitives without a default value are
+    *       held boxed so that a missing value can be represented.
+    */
+   private static String getFieldType(ConfigProperty property)
+   {
+      if (property.isPrimitive() && property.getDefaultLiteral() == null)
+         return property.getValueClass();
+      return getReturnType(property);
+   }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates implementations of configuration interfaces whose methods are annotated with
+ * {@code edu.tamu.tcat.osgi.config.ConfigKey}.
+ * <p>
+ * For an interface {@code p.Outer.DbConfig}, a class {@code p.Config_Outer_DbConfig} is
+ * generated. The class retains the values of all properties of the interface, converted
+ * together against a single configuration snapshot, and converts them again only once the
+ * version of the snapshot changes. See {@link ConfigInterfaceWriter} for the generated code.
+ * <p>
+ * Errors in an interface, such as unannotated methods, methods with parameters, array return
+ * types and default values that cannot be parsed, are reported as compilation errors on the offending element
+ * and no implementation is generated for that interface.
+ */
+@SupportedAnnotationTypes(ConfigKeyProcessor.CONFIG_KEY)
+public class ConfigKeyProcessor extends AbstractProcessor
+{
+   static final String CONFIG_KEY = "edu.tamu.tcat.osgi.config.ConfigKey";
+
+   /** The prefix of the simple name of generated classes. */
+   static final String PREFIX = "Config_";
+
+   @Override
+   public SourceVersion getSupportedSourceVersion()
+   {
+      return SourceVersion.latestSupported();
+   }
+
+   @Override
+   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+   {
+      if (annotations.isEmpty())
+         return false;
+
+      Set<TypeElement> interfaces = new LinkedHashSet<>();
+      for (TypeElement annotation : annotations)
+      {
+         for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+         {
+            Element owner = element.getEnclosingElement();
+            if (element.getKind() != ElementKind.METHOD || owner.getKind() != ElementKind.INTERFACE)
+            {
+               error(element, "@ConfigKey may only annotate methods of an interface");
+               continue;
+            }
+
+            interfaces.add((TypeElement)owner);
+         }
+      }
+
+      for (TypeElement iface : interfaces)
+      {
+         ConfigInterface model = analyze(iface);
+         if (model != null)
+            write(model);
+      }
+
+      return true;
+   }
+
+   /**
+    * @return The properties of a configuration interface, or {@code null} if the interface
+    *       cannot be implemented. In that case, errors have been reported.
+    */
+   private ConfigInterface analyze(TypeElement iface)
+   {
+      boolean valid = true;
+      if (!iface.getTypeParameters().isEmpty())
+      {
+         error(iface, "Configuration interfaces may not declare type parameters");
+         valid = false;
+      }
+
+      for (Element e = iface; e.getKind().isInterface() || e.getKind().isClass(); e = e.getEnclosingElement())
+      {
+         if (e.getModifiers().contains(Modifier.PRIVATE))
+         {
+            error(iface, "Configuration interfaces may not be private or nested in a private type");
+            valid = false;
+            break;
+         }
+      }
+
+      List<ConfigProperty> properties = new ArrayList<>();
+      Set<String> names = new HashSet<>();
+      for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(iface)))
+      {
+         // skip members of Object as well as default and static methods
+         if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE || !method.getModifiers().contains(Modifier.ABSTRACT))
+            continue;
+
+         // a method inherited from several interfaces is implemented once; overloads are
+         // analyzed so that they are reported
+         String name = method.getSimpleName().toString();
+         if (!names.add(name) && method.getParameters().isEmpty())
+            continue;
+
+         ConfigProperty property = analyze(method);
+         if (property == null)
+            valid = false;
+         else
+            properties.add(property);
+      }
+
+      return valid ? new ConfigInterface(iface, properties) : null;
+   }
+
+   /**
+    * @return The property bound to a method, or {@code null} if the method cannot be
+    *       implemented. In that case, errors have been reported.
+    */
+   private ConfigProperty analyze(ExecutableElement method)
+   {
+      AnnotationMirror configKey = getConfigKey(method);
+      if (configKey == null)
+      {
+         error(method, "Methods of a configuration interface must be annotated with @ConfigKey");
+         return null;
+      }
+
+      if (!method.getParameters().isEmpty() || !method.getTypeParameters().isEmpty())
+      {
+         error(method, "@ConfigKey methods may not declare parameters or type parameters");
+         return null;
+      }
+
+      String key = null;
+      List<String> defaults = new ArrayList<>();
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : configKey.getElementValues().entrySet())
+      {
+         String attribute = entry.getKey().getSimpleName().toString();
+         if (attribute.equals("value"))
+         {
+            key = (String)entry.getValue().getValue();
+         }
+         else if (attribute.equals("defaultValue"))
+         {
+            for (Object item : (List<?>)entry.getValue().getValue())
+               defaults.add((String)((AnnotationValue)item).getValue());
+         }
+      }
+
+      if (key == null || key.trim().isEmpty())
+      {
+         error(method, configKey, "@ConfigKey property name may not be blank");
+         return null;
+      }
+
+      if (defaults.size() > 1)
+      {
+         error(method, configKey, "@ConfigKey accepts at most one default value");
+         return null;
+      }
+
+      TypeMirror type = method.getReturnType();
+      String valueClass = getValueClass(type);
+      if (valueClass == null)
+      {
+         error(method, "Unsupported return type " + type + "; expected a primitive or non-generic reference type");
+         return null;
+      }
+
+      String defaultLiteral = null;
+      if (!defaults.isEmpty())
+      {
+         try
+         {
+            defaultLiteral = Literals.of(valueClass, defaults.get(0));
+         }
+         catch (IllegalArgumentException e)
+         {
+            error(method, configKey, e.getMessage());
+            return null;
+         }
+      }
+
+      return new ConfigProperty(method, key, type, valueClass, defaultLiteral);
+   }
+
+   private static AnnotationMirror getConfigKey(ExecutableElement method)
+   {
+      for (AnnotationMirror mirror : method.getAnnotationMirrors())
+      {
+         TypeElement type = (TypeElement)mirror.getAnnotationType().asElement();
+         if (type.getQualifiedName().contentEquals(CONFIG_KEY))
+            return mirror;
+      }
+
+      return null;
+   }
+
+   /**
+    * @return The name of the class used to request values of the given type from the
+    *       configuration, or {@code null} if values of that type cannot be requested. Arrays
+    *       cannot be requested, since no converter produces them.
+    */
+   private String getValueClass(TypeMirror type)
+   {
+      if (type.getKind().isPrimitive())
+         return processingEnv.getTypeUtils().boxedClass((PrimitiveType)type).getQualifiedName().toString();
+
+      if (type.getKind() == TypeKind.DECLARED && ((DeclaredType)type).getTypeArguments().isEmpty())
+         return ((TypeElement)((DeclaredType)type).asElement()).getQualifiedName().toString();
+
+      return null;
+   }
+
+   private void write(ConfigInterface model)
+   {
+      try
+      {
+         JavaFileObject file = processingEnv.getFiler().createSourceFile(model.getQualifiedImplName(), model.getInterface());
+         try (Writer out = file.openWriter())
+         {
+            new ConfigInterfaceWriter(model).write(out);
+         }
+      }
+      catch (IOException e)
+      {
+         error(model.getInterface(), "Failed writing " + model.getQualifiedImplName() + ": " + e.getMessage());
+      }
+   }
+
+   private void error(Element element, String message)
+   {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+   }
+
+   private void error(Element element, AnnotationMirror annotation, String message)
+   {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, annotation);
+   }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.processor;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * A method of a configuration interface and the property it is bound to.
+ */
+final class ConfigProperty
+{
+   private final ExecutableElement method;
+   private final String key;
+   private final TypeMirror type;
+   private final String valueClass;
+   private final String defaultLiteral;
+
+   /**
+    * @param method The method.
+    * @param key The name of the property.
+    * @param type The return type of the method.
+    * @param valueClass The name of the class used to request the value from the configuration.
+    * @param defaultLiteral A Java expression for the default value, or {@code null} if none.
+    */
+   ConfigProperty(ExecutableElement method, String key, TypeMirror type, String valueClass, String defaultLiteral)
+   {
+      this.method = method;
+      this.key = key;
+      this.type = type;
+      this.valueClass = valueClass;
+      this.defaultLiteral = defaultLiteral;
+   }
+
+   String getMethodName()
+   {
+      return method.getSimpleName().toString();
+   }
+
+   String getKey()
+   {
+      return key;
+   }
+
+   TypeMirror getType()
+   {
+      return type;
+   }
+
+   boolean isPrimitive()
+   {
+      return type.getKind().isPrimitive();
+   }
+
+   String getValueClass()
+   {
+      return valueClass;
+   }
+
+   /**
+    * @return A Java expression for the default value, or {@code null} if the property has no default.
+    */
+   String getDefaultLiteral()
+   {
+      return defaultLiteral;
+   }
+}
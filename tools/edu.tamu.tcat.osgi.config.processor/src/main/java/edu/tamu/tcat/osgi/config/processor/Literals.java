@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.processor;
+
+/**
+ * Converts default values given in {@code @ConfigKey} annotations to Java expressions,
+ * so that invalid defaults are reported when the interface is compiled rather than when
+ * the property is read.
+ */
+final class Literals
+{
+   private Literals()
+   {
+   }
+
+   /**
+    * @param valueClass The qualified name of the class of the value.
+    * @param value The default value as it would appear in a properties file.
+    * @return A Java expression of the given class for the value.
+    * @throws IllegalArgumentException If the value is not valid for the class, or defaults
+    *       are not supported for the class.
+    */
+   static String of(String valueClass, String value) throws IllegalArgumentException
+   {
+      String str = value.trim();
+      try
+      {
+         switch (valueClass)
+         {
+            case "java.lang.String":
+               return quote(value);
+            case "java.lang.Boolean":
+               if (!str.equalsIgnoreCase("true") && !str.equalsIgnoreCase("false"))
+                  throw new NumberFormatException();
+               return str.toLowerCase();
+            case "java.lang.Byte":
+               return "(byte)" + Byte.parseByte(str);
+            case "java.lang.Short":
+               return "(short)" + Short.parseShort(str);
+            case "java.lang.Integer":
+               return Integer.toString(Integer.parseInt(str));
+            case "java.lang.Long":
+               return Long.parseLong(str) + "L";
+            case "java.lang.Float":
+               return floatLiteral(Float.parseFloat(str));
+            case "java.lang.Double":
+               return doubleLiteral(Double.parseDouble(str));
+            default:
+               throw new IllegalArgumentException("Default values are only supported for String, primitive and primitive wrapper types, not " + valueClass);
+         }
+      }
+      catch (NumberFormatException e)
+      {
+         throw new IllegalArgumentException("Default value [" + value + "] is not a valid " + valueClass, e);
+      }
+   }
+
+   private static String floatLiteral(float f)
+   {
+      if (Float.isNaN(f))
+         return "java.lang.Float.NaN";
+      if (Float.isInfinite(f))
+         return f > 0 ? "java.lang.Float.POSITIVE_INFINITY" : "java.lang.Float.NEGATIVE_INFINITY";
+      return Float.toString(f) + "f";
+   }
+
+   private static String doubleLiteral(double d)
+   {
+      if (Double.isNaN(d))
+         return "java.lang.Double.NaN";
+      if (Double.isInfinite(d))
+         return d > 0 ? "java.lang.Double.POSITIVE_INFINITY" : "java.lang.Double.NEGATIVE_INFINITY";
+      return Double.toString(d) + "d";
+   }
+
+   /**
+    * @return A Java string literal for the given string.
+    */
+   static String quote(String str)
+   {
+      StringBuilder sb = new StringBuilder(str.length() + 2).append('"');
+      for (int i = 0; i < str.length(); i++)
+      {
+         char c = str.charAt(i);
+         switch (c)
+         {
+            case '"':  sb.append("\\\""); break;
+            case '\\': sb.append("\\\\"); break;
+            case '\n': sb.append("\\n"); break;
+            case '\r': sb.append("\\r"); break;
+            case '\t': sb.append("\\t"); break;
+            default:
+               if (c < 0x20 || c > 0x7e)
+                  sb.append(String.format("\\u%04x", (int)c));
+               else
+                  sb.append(c);
+         }
+      }
+      return sb.append('"').toString();
+   }
+}
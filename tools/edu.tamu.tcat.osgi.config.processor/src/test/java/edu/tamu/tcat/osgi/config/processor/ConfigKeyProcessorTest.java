@@ -0,0 +1,397 @@
+/*
+ * Copyright 2014-2019 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.tamu.tcat.osgi.config.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compiles configuration interfaces with the {@link ConfigKeyProcessor} and checks the
+ * generated implementations. The configuration API is replaced by minimal stand-ins with the
+ * same names, so that the processor module need not depend on the OSGi bundle.
+ */
+public class ConfigKeyProcessorTest
+{
+   private static final String[] API = {
+         "edu.tamu.tcat.osgi.config.ConfigKey",
+         "package edu.tamu.tcat.osgi.config;\n"
+         + "public @interface ConfigKey { String value(); String[] defaultValue() default {}; }\n",
+
+         "edu.tamu.tcat.osgi.config.ConfigurationSnapshot",
+         "package edu.tamu.tcat.osgi.config;\n"
+         + "public interface ConfigurationSnapshot {\n"
+         + "   long getVersion();\n"
+         + "   <T> T getPropertyValue(String name, Class<T> type, T defaultValue);\n"
+         + "}\n",
+
+         "edu.tamu.tcat.osgi.config.ConfigurationProperties",
+         "package edu.tamu.tcat.osgi.config;\n"
+         + "public interface ConfigurationProperties { ConfigurationSnapshot snapshot(); }\n",
+
+         // snapshots over a fixed map; values are converted with valueOf(String)
+         "test.MapProperties",
+         "package test;\n"
+         + "import java.util.*;\n"
+         + "import edu.tamu.tcat.osgi.config.*;\n"
+         + "public class MapProperties implements ConfigurationProperties {\n"
+         + "   public final Map<String, String> values = new HashMap<>();\n"
+         + "   public long version;\n"
+         + "   public int reads;\n"
+         + "   public ConfigurationSnapshot snapshot() {\n"
+         + "      final Map<String, String> copy = new HashMap<>(values);\n"
+         + "      final long v = version;\n"
+         + "      return new ConfigurationSnapshot() {\n"
+         + "         public long getVersion() { return v; }\n"
+         + "         public <T> T getPropertyValue(String name, Class<T> type, T defaultValue) {\n"
+         + "            reads++;\n"
+         + "            String str = copy.get(name);\n"
+         + "            if (str == null) return defaultValue;\n"
+         + "            if (type == String.class) return type.cast(str);\n"
+         + "            try { return type.cast(type.getMethod(\"valueOf\", String.class).invoke(null, str)); }\n"
+         + "            catch (Exception e) { return defaultValue; }\n"
+         + "         }\n"
+         + "      };\n"
+         + "   }\n"
+         + "}\n"
+   };
+
+   private static final String DB_CONFIG =
+         "package sample;\n"
+         + "import edu.tamu.tcat.osgi.config.ConfigKey;\n"
+         + "public interface DbConfig {\n"
+         + "   @ConfigKey(\"db.url\") String url();\n"
+         + "   @ConfigKey(value = \"db.port\", defaultValue = \"5432\") int port();\n"
+         + "   @ConfigKey(\"db.pool\") int poolSize();\n"
+         + "   @ConfigKey(value = \"db.ssl\", defaultValue = \"true\") boolean ssl();\n"
+         + "   @ConfigKey(\"db.timeout\") Long timeout();\n"
+         + "   @ConfigKey(value = \"db.user\", defaultValue = \"a \\\"quoted\\\" name\") String user();\n"
+         + "   default String describe() { return url() + \":\" + port(); }\n"
+         + "}\n";
+
+   private Path dir;
+   private List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      dir = Files.createTempDirectory("config-processor-test");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      Files.walkFileTree(dir, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException
+         {
+            Files.delete(d);
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+
+   @Test
+   public void testGeneratedImplementation() throws Exception
+   {
+      assertCompiles("sample.DbConfig", DB_CONFIG);
+      assertTrue(Files.isRegularFile(dir.resolve("src/sample/Config_DbConfig.java")));
+
+      try (URLClassLoader loader = load())
+      {
+         Object props = loader.loadClass("test.MapProperties").getConstructor().newInstance();
+         values(props).put("db.url", "jdbc:h2:mem");
+         values(props).put("db.pool", "8");
+         values(props).put("db.port", "not a number");
+         Object config = create(loader, "sample.Config_DbConfig", props);
+
+         assertEquals("jdbc:h2:mem", invoke(config, "url"));
+         assertEquals(Integer.valueOf(5432), invoke(config, "port"));
+         assertEquals(Integer.valueOf(8), invoke(config, "poolSize"));
+         assertEquals(Boolean.TRUE, invoke(config, "ssl"));
+         assertEquals(null, invoke(config, "timeout"));
+         assertEquals("a \"quoted\" name", invoke(config, "user"));
+         assertEquals("jdbc:h2:mem:5432", invoke(config, "describe"));
+
+         Class<?> iface = loader.loadClass("sample.DbConfig");
+         assertTrue(iface.isInstance(config));
+         assertTrue(Modifier.isPublic(config.getClass().getModifiers()));
+      }
+   }
+
+   @Test
+   public void testPrimitiveWithoutDefault() throws Exception
+   {
+      assertCompiles("sample.DbConfig", DB_CONFIG);
+      try (URLClassLoader loader = load())
+      {
+         Object props = loader.loadClass("test.MapProperties").getConstructor().newInstance();
+         Object config = create(loader, "sample.Config_DbConfig", props);
+         try
+         {
+            invoke(config, "poolSize");
+            fail("undefined primitive value returned");
+         }
+         catch (IllegalStateException e)
+         {
+            assertTrue(e.getMessage(), e.getMessage().contains("db.pool"));
+         }
+      }
+   }
+
+   @Test
+   public void testValuesReadOncePerVersion() throws Exception
+   {
+      assertCompiles("sample.DbConfig", DB_CONFIG);
+      try (URLClassLoader loader = load())
+      {
+         Class<?> type = loader.loadClass("test.MapProperties");
+         Object props = type.getConstructor().newInstance();
+         values(props).put("db.url", "first");
+         Object config = create(loader, "sample.Config_DbConfig", props);
+
+         assertEquals("first", invoke(config, "url"));
+         int reads = type.getField("reads").getInt(props);
+         assertEquals("all properties are read together", 6, reads);
+
+         // unchanged version; the retained values are returned
+         values(props).put("db.url", "second");
+         assertEquals("first", invoke(config, "url"));
+         assertEquals(Integer.valueOf(5432), invoke(config, "port"));
+         assertEquals(reads, type.getField("reads").getInt(props));
+
+         type.getField("version").setLong(props, 1);
+         assertEquals("second", invoke(config, "url"));
+         assertEquals(2 * reads, type.getField("reads").getInt(props));
+      }
+   }
+
+   @Test
+   public void testNestedInterface() throws Exception
+   {
+      String source = "package sample;\n"
+            + "import edu.tamu.tcat.osgi.config.ConfigKey;\n"
+            + "public class Outer {\n"
+            + "   interface Inner { @ConfigKey(value = \"x\", defaultValue = \"1.5\") double x(); }\n"
+            + "}\n";
+
+      assertCompiles("sample.Outer", source);
+      try (URLClassLoader loader = load())
+      {
+         Object props = loader.loadClass("test.MapProperties").getConstructor().newInstance();
+         Object config = create(loader, "sample.Config_Outer_Inner", props);
+         assertEquals(Double.valueOf(1.5), invoke(config, "x"));
+         assertFalse(Modifier.isPublic(config.getClass().getModifiers()));
+      }
+   }
+
+   @Test
+   public void testArrayReturnTypeRejected() throws Exception
+   {
+      String source = "package sample;\n"
+            + "import edu.tamu.tcat.osgi.config.ConfigKey;\n"
+            + "public interface Hosts {\n"
+            + "   @ConfigKey(\"hosts\") String[] hosts();\n"
+            + "   @ConfigKey(\"ports\") int[] ports();\n"
+            + "}\n";
+
+      assertFalse(compile("sample.Hosts", source));
+      assertErrors("Unsupported return type java.lang.String[]", "Unsupported return type int[]");
+      assertFalse(Files.exists(dir.resolve("src/sample/Config_Hosts.java")));
+   }
+
+   @Test
+   public void testInvalidInterfacesRejected() throws Exception
+   {
+      String source = "package sample;\n"
+            + "import edu.tamu.tcat.osgi.config.ConfigKey;\n"
+            + "import java.util.List;\n"
+            + "public interface Invalid {\n"
+            + "   @ConfigKey(\"a\") List<String> generic();\n"
+            + "   @ConfigKey(\"b\") String withParameter(int x);\n"
+            + "   @ConfigKey(value = \"c\", defaultValue = \"abc\") int badDefault();\n"
+            + "   @ConfigKey(value = \"d\", defaultValue = { \"1\", \"2\" }) int twoDefaults();\n"
+            + "   @ConfigKey(\" \") String blank();\n"
+            + "   String unannotated();\n"
+            + "}\n";
+
+      assertFalse(compile("sample.Invalid", source));
+      assertErrors("Unsupported return type java.util.List<java.lang.String>",
+            "may not declare parameters",
+            "Default value [abc] is not a valid java.lang.Integer",
+            "at most one default value",
+            "property name may not be blank",
+            "must be annotated with @ConfigKey");
+      assertFalse(Files.exists(dir.resolve("src/sample/Config_Invalid.java")));
+   }
+
+   /**
+    * Compile a source file together with the stand-in API, running the processor.
+    *
+    * @return Whether compilation succeeded.
+    */
+   private boolean compile(String className, String source) throws IOException
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      assertNotNull("no system Java compiler", compiler);
+
+      List<JavaFileObject> sources = new ArrayList<>();
+      for (int ix = 0; ix < API.length; ix += 2)
+         sources.add(new Source(API[ix], API[ix + 1]));
+      sources.add(new Source(className, source));
+
+      Files.createDirectories(dir.resolve("src"));
+      Files.createDirectories(dir.resolve("classes"));
+
+      DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+      try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, Locale.ENGLISH, null))
+      {
+         fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(dir.resolve("src").toFile()));
+         fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(dir.resolve("classes").toFile()));
+
+         JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector, null, null, sources);
+         task.setProcessors(Collections.singleton(new ConfigKeyProcessor()));
+         boolean success = task.call().booleanValue();
+         diagnostics = collector.getDiagnostics();
+         return success;
+      }
+   }
+
+   private void assertCompiles(String className, String source) throws IOException
+   {
+      boolean success = compile(className, source);
+      assertTrue(errors().toString(), success);
+   }
+
+   private List<String> errors()
+   {
+      List<String> errors = new ArrayList<>();
+      for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics)
+      {
+         if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+            errors.add(diagnostic.getMessage(Locale.ENGLISH));
+      }
+      return errors;
+   }
+
+   private void assertErrors(String... expected)
+   {
+      List<String> errors = errors();
+      assertEquals(errors.toString(), expected.length, errors.size());
+      for (String message : expected)
+      {
+         boolean found = false;
+         for (String error : errors)
+            found |= error.contains(message);
+         assertTrue("missing error [" + message + "] in " + errors, found);
+      }
+   }
+
+   private URLClassLoader load() throws IOException
+   {
+      return new URLClassLoader(new URL[] { dir.resolve("classes").toUri().toURL() }, getClass().getClassLoader());
+   }
+
+   @SuppressWarnings("unchecked")
+   private static Map<String, String> values(Object props) throws Exception
+   {
+      return (Map<String, String>)props.getClass().getField("values").get(props);
+   }
+
+   private static Object create(ClassLoader loader, String implName, Object props) throws Exception
+   {
+      Class<?> impl = loader.loadClass(implName);
+      Constructor<?> constructor = impl.getConstructor(loader.loadClass("edu.tamu.tcat.osgi.config.ConfigurationProperties"));
+      constructor.setAccessible(true);
+      return constructor.newInstance(props);
+   }
+
+   private static Object invoke(Object config, String method) throws Exception
+   {
+      Method m = config.getClass().getMethod(method);
+      m.setAccessible(true);
+      try
+      {
+         return m.invoke(config);
+      }
+      catch (InvocationTargetException e)
+      {
+         if (e.getCause() instanceof RuntimeException)
+            throw (RuntimeException)e.getCause();
+         throw e;
+      }
+   }
+
+   private static final class Source extends SimpleJavaFileObject
+   {
+      private final String content;
+
+      Source(String className, String content)
+      {
+         super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+         this.content = content;
+      }
+
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors)
+      {
+         return content;
+      }
+   }
+}